@@ -0,0 +1,93 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end throughput of {@link FromXml.Value#apply} on generated documents, with and without stylesheet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FromXmlBenchmark {
+
+    @Param({"10", "100"})
+    public int fields;
+
+    @Param({"0", "4"})
+    public int depth;
+
+    @Param({"1", "100"})
+    public int cardinality;
+
+    @Param({"false", "true"})
+    public boolean mixedTypes;
+
+    @Param({"false", "true"})
+    public boolean xslt;
+
+    @Param({"AVRO", "STRUCT", "AVRO_BINARY"})
+    public String format;
+
+    private Path directory;
+    private FromXml.Value<SourceRecord> transform;
+    private SourceRecord record;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticDocument document = SyntheticDocument.of(fields, depth, cardinality, mixedTypes);
+        directory = Files.createTempDirectory("from-xml-benchmark");
+
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(FromXmlConfig.AVRO_SCHEMA_PATH_CONFIG, document.writeSchema(directory).toString());
+        settings.put(FromXmlConfig.OUTPUT_FORMAT_CONFIG, format);
+        if (xslt) {
+            settings.put(FromXmlConfig.TRANSFORMER_PATH_CONFIG,
+                    SyntheticDocument.writeCopyStylesheet(directory).toUri().toString());
+        }
+        transform = new FromXml.Value<>();
+        transform.configure(settings);
+
+        record = new SourceRecord(Collections.emptyMap(), Collections.emptyMap(), "benchmark",
+                Schema.BYTES_SCHEMA, document.xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        transform.close();
+        for (File file : directory.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public SourceRecord apply() {
+        return transform.apply(record);
+    }
+}
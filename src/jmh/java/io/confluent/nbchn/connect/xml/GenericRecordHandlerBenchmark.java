@@ -0,0 +1,69 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link GenericRecordHandler} alone, fed by the JDK SAX parser, for each output format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenericRecordHandlerBenchmark {
+
+    @Param({"10", "100"})
+    public int fields;
+
+    @Param({"0", "4"})
+    public int depth;
+
+    @Param({"1", "100"})
+    public int cardinality;
+
+    @Param({"false", "true"})
+    public boolean mixedTypes;
+
+    @Param({"AVRO", "STRUCT", "AVRO_BINARY"})
+    public String format;
+
+    private SAXParser parser;
+    private GenericRecordHandler handler;
+    private byte[] xml;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticDocument document = SyntheticDocument.of(fields, depth, cardinality, mixedTypes);
+        OutputFormat outputFormat = OutputFormat.valueOf(format);
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        parser = factory.newSAXParser();
+        handler = new GenericRecordHandler(SchemaNode.compile(document.schema, outputFormat),
+                ValueBuilder.of(outputFormat));
+        xml = document.xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object parse() throws Exception {
+        parser.parse(new InputSource(new ByteArrayInputStream(xml)), handler);
+        return handler.getValue();
+    }
+}
@@ -0,0 +1,130 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generated XML document and its Avro schema.
+ * The root record holds {@code fields} flat fields, a chain of {@code depth} nested records holding as many fields,
+ * and an array of {@code cardinality} records holding as many fields again, written as repeated elements.
+ */
+final class SyntheticDocument {
+
+    // a copy of the whole document, forces a full XSLT pass without changing the structure
+    private static final String COPY_STYLESHEET = "<xsl:stylesheet version=\"1.0\" " +
+            "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:template match=\"/\"><xsl:copy-of select=\"/\"/></xsl:template>" +
+            "</xsl:stylesheet>";
+
+    private static final Schema.Type[] MIXED_TYPES = {
+            Schema.Type.STRING, Schema.Type.INT, Schema.Type.LONG, Schema.Type.DOUBLE, Schema.Type.BOOLEAN
+    };
+
+    final Schema schema;
+    final String xml;
+
+    private SyntheticDocument(Schema schema, String xml) {
+        this.schema = schema;
+        this.xml = xml;
+    }
+
+    /**
+     * @param fields number of flat fields per record
+     * @param depth number of nested records below the root
+     * @param cardinality number of elements of the array
+     * @param mixedTypes mix strings, numbers and booleans, only strings otherwise
+     * @return generated document
+     */
+    static SyntheticDocument of(int fields, int depth, int cardinality, boolean mixedTypes) {
+        SchemaBuilder.FieldAssembler<Schema> root =
+                flatFields(SchemaBuilder.record("Root").fields(), fields, mixedTypes);
+        if (depth > 0) {
+            root = root.name("child").type(nested(1, depth, fields, mixedTypes)).noDefault();
+        }
+        Schema item = flatFields(SchemaBuilder.record("Item").fields(), fields, mixedTypes).endRecord();
+        Schema schema = root.name("items").type().array().items(item).noDefault().endRecord();
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root>");
+        flatElements(xml, fields, mixedTypes, 0);
+        for (int level = 1; level <= depth; level++) {
+            xml.append("<child>");
+            flatElements(xml, fields, mixedTypes, level);
+        }
+        for (int level = 1; level <= depth; level++) {
+            xml.append("</child>");
+        }
+        for (int i = 0; i < cardinality; i++) {
+            xml.append("<items>");
+            flatElements(xml, fields, mixedTypes, i);
+            xml.append("</items>");
+        }
+        xml.append("</root>");
+        return new SyntheticDocument(schema, xml.toString());
+    }
+
+    /**
+     * @param directory directory to write to
+     * @return path of the Avro schema file
+     */
+    Path writeSchema(Path directory) throws IOException {
+        return Files.write(directory.resolve("schema.avsc"), schema.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param directory directory to write to
+     * @return path of a stylesheet copying the document as is
+     */
+    static Path writeCopyStylesheet(Path directory) throws IOException {
+        return Files.write(directory.resolve("copy.xsl"), COPY_STYLESHEET.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Schema nested(int level, int depth, int fields, boolean mixedTypes) {
+        SchemaBuilder.FieldAssembler<Schema> record =
+                flatFields(SchemaBuilder.record("Level" + level).fields(), fields, mixedTypes);
+        if (level < depth) {
+            record = record.name("child").type(nested(level + 1, depth, fields, mixedTypes)).noDefault();
+        }
+        return record.endRecord();
+    }
+
+    private static SchemaBuilder.FieldAssembler<Schema> flatFields(SchemaBuilder.FieldAssembler<Schema> record,
+                                                                   int fields, boolean mixedTypes) {
+        for (int i = 0; i < fields; i++) {
+            record = record.name("f" + i).type(Schema.create(typeOf(i, mixedTypes))).noDefault();
+        }
+        return record;
+    }
+
+    private static void flatElements(StringBuilder xml, int fields, boolean mixedTypes, int seed) {
+        for (int i = 0; i < fields; i++) {
+            xml.append("<f").append(i).append('>');
+            switch (typeOf(i, mixedTypes)) {
+                case INT:
+                    xml.append(seed * 31 + i);
+                    break;
+                case LONG:
+                    xml.append(1590000000000L + seed * 1000L + i);
+                    break;
+                case DOUBLE:
+                    xml.append(seed + i + 0.25);
+                    break;
+                case BOOLEAN:
+                    xml.append((seed + i) % 2 == 0);
+                    break;
+                default:
+                    xml.append("value ").append(seed).append('-').append(i);
+                    break;
+            }
+            xml.append("</f").append(i).append('>');
+        }
+    }
+
+    private static Schema.Type typeOf(int field, boolean mixedTypes) {
+        return mixedTypes ? MIXED_TYPES[field % MIXED_TYPES.length] : Schema.Type.STRING;
+    }
+}
@@ -0,0 +1,170 @@
+package io.confluent.nbchn.connect.xml;
+
+import com.fasterxml.aalto.AsyncByteArrayFeeder;
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * SAX reader over the Aalto non-blocking parser. The parser never blocks on the input, it reports an incomplete
+ * event when it needs more bytes and is then fed the next chunk of the input, so that the document is never
+ * buffered as a whole and the parse can stop without reading the rest of it.
+ * Character inputs are already decoded, they are pulled through the regular Aalto stream reader, and so are byte
+ * inputs in an encoding the non-blocking parser does not decode: anything but UTF-8, US-ASCII and ISO-8859-1, told
+ * by the byte order mark or the XML declaration.
+ * One reader per converter, not thread-safe.
+ */
+class AsyncXmlReader extends StaxXmlReader {
+
+    static final int CHUNK_SIZE = 8192;
+    // read ahead to find the encoding, enough for the XML declaration of any document
+    private static final int DECLARATION_SIZE = 256;
+
+    private final AsyncXMLInputFactory factory;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    // input of the current parse, null when pulled through the stream reader
+    private InputStream input;
+    private boolean ended;
+    // bytes of the chunk read ahead and not fed yet
+    private int pending;
+
+    AsyncXmlReader() {
+        this(new InputFactoryImpl());
+    }
+
+    private AsyncXmlReader(AsyncXMLInputFactory factory) {
+        super(factory);
+        this.factory = factory;
+    }
+
+    @Override
+    public void parse(InputSource source) throws IOException, SAXException {
+        try {
+            super.parse(source);
+        } finally {
+            // pooled readers do not hold on to the record
+            input = null;
+        }
+    }
+
+    @Override
+    protected XMLStreamReader open(InputSource source) throws XMLStreamException, IOException {
+        if (source.getCharacterStream() != null) {
+            input = null;
+            return super.open(source);
+        }
+        InputStream stream = source.getByteStream() != null ?
+                source.getByteStream() :
+                new URL(source.getSystemId()).openStream();
+        int read = 0;
+        int n;
+        while (read < DECLARATION_SIZE && (n = stream.read(chunk, read, DECLARATION_SIZE - read)) >= 0) {
+            read += n;
+        }
+        String encoding = source.getEncoding() != null ? source.getEncoding() : encoding(chunk, read);
+        if (!isAsyncEncoding(encoding)) {
+            input = null;
+            InputSource decoded = new InputSource(new SequenceInputStream(
+                    new ByteArrayInputStream(Arrays.copyOf(chunk, read)), stream));
+            decoded.setEncoding(source.getEncoding());
+            return super.open(decoded);
+        }
+        input = stream;
+        pending = read;
+        ended = false;
+        return factory.createAsyncForByteArray();
+    }
+
+    /**
+     * @param head first bytes of the document
+     * @param length number of bytes read
+     * @return encoding given by the byte order mark or the XML declaration, null if neither gives it, only to tell
+     * whether the non-blocking parser decodes it: the stream reader detects the exact encoding by itself
+     */
+    private static String encoding(byte[] head, int length) {
+        if (length >= 2 && (head[0] == (byte) 0xFE && head[1] == (byte) 0xFF ||
+                head[0] == (byte) 0xFF && head[1] == (byte) 0xFE)) {
+            return "UTF-16";
+        }
+        if (length >= 2 && (head[0] == 0 || head[1] == 0)) {
+            // no byte order mark, the first character is wider than a byte
+            return head[0] == 0 && head[1] == 0 ? "UTF-32" : "UTF-16";
+        }
+        if (length >= 3 && head[0] == (byte) 0xEF && head[1] == (byte) 0xBB && head[2] == (byte) 0xBF) {
+            return "UTF-8";
+        }
+        String declaration = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+        if (!declaration.startsWith("<?xml")) {
+            return null;
+        }
+        int end = declaration.indexOf("?>");
+        int attribute = declaration.indexOf("encoding");
+        if (end < 0 || attribute < 0 || attribute > end) {
+            return null;
+        }
+        int quote = attribute + "encoding".length();
+        while (quote < end && declaration.charAt(quote) != '"' && declaration.charAt(quote) != '\'') {
+            quote++;
+        }
+        int close = quote < end ? declaration.indexOf(declaration.charAt(quote), quote + 1) : -1;
+        return close < 0 || close > end ? null : declaration.substring(quote + 1, close);
+    }
+
+    private static boolean isAsyncEncoding(String encoding) {
+        if (encoding == null) {
+            return true;
+        }
+        switch (encoding.toUpperCase(Locale.ROOT)) {
+            case "UTF-8":
+            case "UTF8":
+            case "US-ASCII":
+            case "ASCII":
+            case "ISO-8859-1":
+            case "LATIN1":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected int next(XMLStreamReader reader) throws XMLStreamException, IOException {
+        if (input == null) {
+            return super.next(reader);
+        }
+        AsyncByteArrayFeeder feeder = ((AsyncXMLStreamReader<AsyncByteArrayFeeder>) reader).getInputFeeder();
+        int event;
+        while ((event = reader.next()) == AsyncXMLStreamReader.EVENT_INCOMPLETE) {
+            if (ended) {
+                throw new XMLStreamException("Unexpected end of document", reader.getLocation());
+            }
+            if (pending > 0) {
+                feeder.feedInput(chunk, 0, pending);
+                pending = 0;
+                continue;
+            }
+            int read = input.read(chunk);
+            if (read < 0) {
+                ended = true;
+                feeder.endOfInput();
+            } else {
+                feeder.feedInput(chunk, 0, read);
+            }
+        }
+        return event;
+    }
+}
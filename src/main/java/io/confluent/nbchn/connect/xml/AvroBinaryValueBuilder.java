@@ -0,0 +1,314 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * {@link ValueBuilder} writing the Avro binary encoding of the record without building it.
+ * Fields are written straight to the output as long as the document follows the schema order. A field appearing
+ * before the fields preceding it in the schema is encoded into a separate segment, which is copied to the output
+ * once the missing fields are written. Fields absent from the document are written from their default value, null
+ * for nullable fields without default.
+ * Array elements and map entries are written as blocks of one element since their count is unknown until the
+ * collection ends.
+ */
+final class AvroBinaryValueBuilder implements ValueBuilder {
+
+    private final Segment output = new Segment();
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final Deque<Segment> freeSegments = new ArrayDeque<>();
+
+    @Override
+    public void reset() {
+        output.reset();
+        frames.clear();
+    }
+
+    @Override
+    public void startRecord(SchemaNode node) throws SAXException {
+        frames.add(new Frame(node, open(node), Kind.RECORD));
+    }
+
+    @Override
+    public void endRecord(SchemaNode node) throws SAXException {
+        Frame frame = frames.pollLast();
+        SchemaNode[] fields = frame.node.getFields();
+        for (; frame.next < fields.length; frame.next++) {
+            Segment pending = frame.pending(frame.next);
+            if (pending != null) {
+                pending.writeTo(frame.out);
+                release(pending);
+            } else if (fields[frame.next].getEncodedDefault() != null) {
+                byte[] encodedDefault = fields[frame.next].getEncodedDefault();
+                frame.out.write(encodedDefault, 0, encodedDefault.length);
+            } else {
+                throw new InvalidDocumentException("Missing element " + fields[frame.next].getName());
+            }
+        }
+        completed(frame.out);
+    }
+
+    @Override
+    public void startArray(SchemaNode node) throws SAXException {
+        Segment out = open(node);
+        try {
+            out.encoder.writeArrayStart();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        frames.add(new Frame(node, out, Kind.ARRAY));
+    }
+
+    @Override
+    public void endArray(SchemaNode node) throws SAXException {
+        Frame frame = frames.pollLast();
+        try {
+            frame.out.encoder.writeArrayEnd();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        completed(frame.out);
+    }
+
+    @Override
+    public void startMap(SchemaNode node) throws SAXException {
+        Segment out = open(node);
+        try {
+            out.encoder.writeMapStart();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        frames.add(new Frame(node, out, Kind.MAP));
+    }
+
+    @Override
+    public void endMap(SchemaNode node) throws SAXException {
+        Frame frame = frames.pollLast();
+        try {
+            frame.out.encoder.writeMapEnd();
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        completed(frame.out);
+    }
+
+    @Override
+    public void key(String key) throws SAXException {
+        Frame map = frames.peekLast();
+        try {
+            map.out.encoder.setItemCount(1);
+            map.out.encoder.startItem();
+            map.out.encoder.writeString(key);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    @Override
+    public void value(SchemaNode node, Object value) throws SAXException {
+        Segment out = open(node);
+        try {
+            node.getEncoder().encode(out.encoder, value);
+        } catch (IOException e) {
+            throw new SAXException(e);
+        }
+        completed(out);
+    }
+
+    @Override
+    public Object getValue() {
+        return Arrays.copyOf(output.buf, output.count);
+    }
+
+    /**
+     * @param node node of the value about to be written
+     * @return segment the value must be written to, positioned after the union branch of optional values
+     */
+    private Segment open(SchemaNode node) throws SAXException {
+        Segment out = outputOf(node);
+        if (node.getUnionIndex() >= 0) {
+            try {
+                out.encoder.writeIndex(node.getUnionIndex());
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param node node of the value about to be written
+     * @return segment the value must be written to
+     */
+    private Segment outputOf(SchemaNode node) throws SAXException {
+        Frame parent = frames.peekLast();
+        if (parent == null) {
+            return output;
+        }
+
+        if (parent.kind == Kind.MAP) {
+            // the entry started with its key
+            return parent.out;
+        }
+        if (parent.kind == Kind.ARRAY) {
+            try {
+                parent.out.encoder.setItemCount(1);
+                parent.out.encoder.startItem();
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+            return parent.out;
+        }
+
+        int position = node.getPosition();
+        if (position == parent.next) {
+            return parent.out;
+        }
+        if (position < parent.next || parent.pending(position) != null) {
+            throw new InvalidDocumentException("Element " + node.getName() +
+                    " repeated, Avro binary output expects fields once");
+        }
+        Segment segment = freeSegments.isEmpty() ? new Segment() : freeSegments.pollLast();
+        parent.setPending(position, segment);
+        return segment;
+    }
+
+    /**
+     * A value written in place moves its parent record to the next field, which may already be pending.
+     * @param out segment the value was written to
+     */
+    private void completed(Segment out) {
+        Frame parent = frames.peekLast();
+        if (parent == null || parent.kind != Kind.RECORD || out != parent.out) {
+            return;
+        }
+
+        parent.next++;
+        Segment pending;
+        while ((pending = parent.pending(parent.next)) != null) {
+            pending.writeTo(parent.out);
+            release(pending);
+            parent.setPending(parent.next, null);
+            parent.next++;
+        }
+    }
+
+    private void release(Segment segment) {
+        segment.reset();
+        freeSegments.add(segment);
+    }
+
+    /**
+     * @param schema schema of a flat value
+     * @return encoder of the values converted for the schema, or an encoder rejecting every value if the schema is
+     * not flat
+     */
+    static ValueEncoder encoderOf(Schema schema) {
+        switch (schema.getType()) {
+            case NULL:
+                return (encoder, value) -> encoder.writeNull();
+            case BOOLEAN:
+                return (encoder, value) -> encoder.writeBoolean((Boolean) value);
+            case INT:
+                return (encoder, value) -> encoder.writeInt((Integer) value);
+            case LONG:
+                return (encoder, value) -> encoder.writeLong((Long) value);
+            case FLOAT:
+                return (encoder, value) -> encoder.writeFloat((Float) value);
+            case DOUBLE:
+                return (encoder, value) -> encoder.writeDouble((Double) value);
+            case STRING:
+                return (encoder, value) -> encoder.writeString((String) value);
+            case ENUM:
+                // converted to the ordinal of the symbol
+                return (encoder, value) -> encoder.writeEnum((Integer) value);
+            case BYTES:
+                return (encoder, value) -> encoder.writeBytes((ByteBuffer) value);
+            case FIXED:
+                return (encoder, value) -> encoder.writeFixed(((GenericFixed) value).bytes());
+            default:
+                return (encoder, value) -> {
+                    throw new IOException("Unsupported type " + schema.getType());
+                };
+        }
+    }
+
+    private enum Kind {
+        RECORD, ARRAY, MAP
+    }
+
+    /**
+     * Record, array or map being written.
+     */
+    private static final class Frame {
+        private final SchemaNode node;
+        private final Segment out;
+        private final Kind kind;
+        private int next;
+        private Segment[] pending;
+
+        Frame(SchemaNode node, Segment out, Kind kind) {
+            this.node = node;
+            this.out = out;
+            this.kind = kind;
+        }
+
+        Segment pending(int position) {
+            return pending == null || position >= pending.length ? null : pending[position];
+        }
+
+        void setPending(int position, Segment segment) {
+            if (pending == null) {
+                pending = new Segment[node.getFields().length];
+            }
+            pending[position] = segment;
+        }
+    }
+
+    /**
+     * Growable byte buffer with its own encoder. Encoders are direct so that raw segment copies and encoded values
+     * can be interleaved.
+     */
+    private static final class Segment extends OutputStream {
+        private final BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(this, null);
+        private byte[] buf = new byte[256];
+        private int count;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        void writeTo(Segment target) {
+            target.write(buf, 0, count);
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        private void ensureCapacity(int length) {
+            if (count + length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + length));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.generic.GenericArray;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Build Avro {@link GenericRecord}.
+ */
+final class AvroValueBuilder extends ContainerValueBuilder {
+
+    @Override
+    protected Object newRecord(SchemaNode node) {
+        return new GenericData.Record(node.getSchema());
+    }
+
+    @Override
+    protected void put(Object record, SchemaNode field, Object value) {
+        ((GenericRecord) record).put(field.getPosition(), value);
+    }
+
+    @Override
+    protected Object newArray(SchemaNode node, int capacity) {
+        return new GenericData.Array<>(capacity, node.getSchema());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void add(Object array, Object value) {
+        ((GenericArray<Object>) array).add(value);
+    }
+}
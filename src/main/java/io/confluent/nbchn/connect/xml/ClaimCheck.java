@@ -0,0 +1,59 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.connect.errors.DataException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Resolve the file references records hold instead of documents, restricted to the files under a base directory.
+ * References are resolved against the base directory with their symbolic links, so that neither {@code ..} nor a
+ * link can reach a file outside of it.
+ */
+final class ClaimCheck {
+
+    private final Path baseDir;
+
+    /**
+     * @param baseDir directory holding the referenced files
+     * @throws IOException the directory does not exist
+     */
+    ClaimCheck(String baseDir) throws IOException {
+        this.baseDir = Paths.get(baseDir).toRealPath();
+        if (!Files.isDirectory(this.baseDir)) {
+            throw new IOException(baseDir + " is not a directory");
+        }
+    }
+
+    /**
+     * @param reference path of the file as a String or UTF-8 bytes, relative to the base directory or absolute
+     * @return real path of the file
+     * @throws DataException the reference is not a readable file under the base directory
+     */
+    Path resolve(Object reference) {
+        if (!(reference instanceof String) && !(reference instanceof byte[])) {
+            throw new DataException("Expected a String or bytes file reference, got " +
+                    (reference == null ? "null" : reference.getClass().getName()));
+        }
+        String name = (reference instanceof String ? (String) reference :
+                new String((byte[]) reference, StandardCharsets.UTF_8)).trim();
+        Path path;
+        try {
+            path = baseDir.resolve(name).toRealPath();
+        } catch (IOException | InvalidPathException e) {
+            throw new DataException("File reference " + name + " does not resolve to a file", e);
+        }
+        if (!path.startsWith(baseDir)) {
+            throw new DataException("File reference " + name + " is outside of " +
+                    FromXmlConfig.CLAIM_CHECK_BASE_DIR_CONFIG);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new DataException("File reference " + name + " is not a regular file");
+        }
+        return path;
+    }
+}
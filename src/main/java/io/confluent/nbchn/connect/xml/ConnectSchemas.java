@@ -0,0 +1,175 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Translate Avro schemas into Kafka Connect schemas.
+ * The translation is meant to run once at configure time, the result is cached in the {@link SchemaNode} plan.
+ * Logical types map to the Connect logical types when there is one. Unions of several flat types map to a struct
+ * with one optional field per branch like the Confluent Avro converter does, only the field of the branch of the
+ * value is set.
+ */
+final class ConnectSchemas {
+
+    static final String UNION_NAME = "io.confluent.connect.avro.Union";
+
+    private ConnectSchemas() {
+    }
+
+    /**
+     * @param schema Avro schema
+     * @return equivalent Connect schema
+     * @throws IllegalArgumentException recursive or unsupported schema
+     */
+    static org.apache.kafka.connect.data.Schema toConnect(Schema schema) {
+        return toConnect(schema, false, new IdentityHashMap<>());
+    }
+
+    private static org.apache.kafka.connect.data.Schema toConnect(Schema schema, boolean optional,
+                                                                  Map<Schema, Boolean> visiting) {
+        SchemaBuilder logical = logical(schema);
+        if (logical != null) {
+            return optional ? logical.optional().build() : logical.build();
+        }
+        final SchemaBuilder builder;
+        switch (schema.getType()) {
+            case RECORD:
+                if (visiting.put(schema, Boolean.TRUE) != null) {
+                    throw new IllegalArgumentException("Recursive schema " + schema.getFullName()
+                            + " can not be expressed as a Connect schema");
+                }
+                builder = SchemaBuilder.struct().name(schema.getFullName());
+                for (Schema.Field field : schema.getFields()) {
+                    builder.field(field.name(), toConnect(field.schema(), false, visiting));
+                }
+                visiting.remove(schema);
+                break;
+            case ARRAY:
+                builder = SchemaBuilder.array(toConnect(schema.getElementType(), false, visiting));
+                break;
+            case MAP:
+                builder = SchemaBuilder.map(
+                        org.apache.kafka.connect.data.Schema.STRING_SCHEMA,
+                        toConnect(schema.getValueType(), false, visiting)
+                );
+                break;
+            case UNION:
+                List<Schema> branches = new ArrayList<>();
+                boolean nullable = false;
+                for (Schema branch : schema.getTypes()) {
+                    if (branch.getType() == Schema.Type.NULL) {
+                        nullable = true;
+                    } else {
+                        branches.add(branch);
+                    }
+                }
+                if (branches.size() == 1) {
+                    return toConnect(branches.get(0), nullable || optional, visiting);
+                }
+                builder = SchemaBuilder.struct().name(UNION_NAME);
+                for (Schema branch : branches) {
+                    if (!SchemaNode.isFlat(branch.getType())) {
+                        throw new IllegalArgumentException("Unsupported union " + schema + ", records, arrays and " +
+                                "maps can only be in a union with null");
+                    }
+                    builder.field(branchName(branch), toConnect(branch, true, visiting));
+                }
+                optional |= nullable;
+                break;
+            case STRING:
+            case ENUM:
+                builder = SchemaBuilder.string();
+                break;
+            case BYTES:
+            case FIXED:
+                builder = SchemaBuilder.bytes();
+                break;
+            case INT:
+                builder = SchemaBuilder.int32();
+                break;
+            case LONG:
+                builder = SchemaBuilder.int64();
+                break;
+            case FLOAT:
+                builder = SchemaBuilder.float32();
+                break;
+            case DOUBLE:
+                builder = SchemaBuilder.float64();
+                break;
+            case BOOLEAN:
+                builder = SchemaBuilder.bool();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + schema.getType());
+        }
+
+        if (optional) {
+            builder.optional();
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param schema Avro schema
+     * @return builder of the Connect logical type matching the Avro logical type, null if there is none
+     */
+    private static SchemaBuilder logical(Schema schema) {
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType == null) {
+            return null;
+        }
+        switch (logicalType.getName()) {
+            case "date":
+                return Date.builder();
+            case "time-millis":
+                return Time.builder();
+            case "timestamp-millis":
+                return Timestamp.builder();
+            case "decimal":
+                return Decimal.builder(((LogicalTypes.Decimal) logicalType).getScale());
+            default:
+                // microsecond precision has no Connect logical type, the underlying type is used
+                return null;
+        }
+    }
+
+    /**
+     * @param branch flat branch of a union
+     * @return name of the field of the branch in the Connect union struct
+     */
+    static String branchName(Schema branch) {
+        switch (branch.getType()) {
+            case ENUM:
+            case FIXED:
+                return branch.getFullName();
+            default:
+                return branch.getType().getName();
+        }
+    }
+
+    /**
+     * @param union Connect union struct schema
+     * @param branch flat branch of the union
+     * @param converter converter of the branch
+     * @return converter setting the value of the branch in a union struct
+     */
+    static ValueConverter unionConverter(org.apache.kafka.connect.data.Schema union, Schema branch,
+                                         ValueConverter converter) {
+        Field field = union.field(branchName(branch));
+        return (ch, start, length) -> new Struct(union).put(field, converter.convert(ch, start, length));
+    }
+}
@@ -0,0 +1,121 @@
+package io.confluent.nbchn.connect.xml;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ValueBuilder} building a tree of in-memory containers, the representation of records and arrays is left to
+ * the subclasses, maps are {@link HashMap} keyed by String for both Avro and Connect.
+ * Arrays are created with the size of the last array of the same node, which is usually the size of the next one.
+ */
+abstract class ContainerValueBuilder implements ValueBuilder {
+
+    // open containers, and for maps the key of the entry being built
+    private Object[] containers = new Object[16];
+    private String[] keys = new String[16];
+    private int depth;
+    private Object value;
+
+    protected abstract Object newRecord(SchemaNode node);
+
+    protected abstract void put(Object record, SchemaNode field, Object value);
+
+    /**
+     * @param capacity expected number of elements
+     * @return new array, a {@link List}
+     */
+    protected abstract Object newArray(SchemaNode node, int capacity);
+
+    protected abstract void add(Object array, Object value);
+
+    @Override
+    public void reset() {
+        Arrays.fill(containers, 0, depth, null);
+        Arrays.fill(keys, 0, depth, null);
+        depth = 0;
+        value = null;
+    }
+
+    @Override
+    public void startRecord(SchemaNode node) {
+        push(newRecord(node));
+    }
+
+    @Override
+    public void endRecord(SchemaNode node) {
+        end(node);
+    }
+
+    @Override
+    public void startArray(SchemaNode node) {
+        push(newArray(node, node.getSizeHint()));
+    }
+
+    @Override
+    public void endArray(SchemaNode node) {
+        node.setSizeHint(((List<?>) containers[depth - 1]).size());
+        end(node);
+    }
+
+    @Override
+    public void startMap(SchemaNode node) {
+        push(new HashMap<String, Object>());
+    }
+
+    @Override
+    public void endMap(SchemaNode node) {
+        end(node);
+    }
+
+    @Override
+    public void key(String key) {
+        keys[depth - 1] = key;
+    }
+
+    @Override
+    public void value(SchemaNode node, Object value) {
+        attach(node, value);
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+
+    private void push(Object container) {
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            keys = Arrays.copyOf(keys, depth * 2);
+        }
+        containers[depth++] = container;
+    }
+
+    private void end(SchemaNode node) {
+        Object container = containers[--depth];
+        containers[depth] = null;
+        if (depth == 0) {
+            value = container;
+        } else {
+            attach(node, container);
+        }
+    }
+
+    /**
+     * Map values follow their key, fields have a position in their parent record, array elements do not.
+     */
+    @SuppressWarnings("unchecked")
+    private void attach(SchemaNode node, Object child) {
+        Object parent = containers[depth - 1];
+        String key = keys[depth - 1];
+        if (key != null) {
+            ((Map<String, Object>) parent).put(key, child);
+            keys[depth - 1] = null;
+        } else if (node.getPosition() < 0) {
+            add(parent, child);
+        } else {
+            put(parent, node, child);
+        }
+    }
+}
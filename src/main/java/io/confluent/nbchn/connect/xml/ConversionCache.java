@@ -0,0 +1,178 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericData;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of converted values by input, for streams repeating byte-identical documents.
+ * Inputs are compared in full, the hash only selects the bucket. The cache keeps its own copy of the values and
+ * hands out a copy on every hit, records modified downstream never change the value of the next records with the
+ * same input. Copying is still much cheaper than parsing. Thread-safe.
+ */
+final class ConversionCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxEntries maximum number of cached values
+     * @param maxBytes maximum total size of the cached inputs, in bytes or characters for String inputs
+     */
+    ConversionCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param input String or bytes
+     * @return copy of the value converted from the same input, null if not cached
+     */
+    Object get(Object input) {
+        Key key = new Key(input);
+        Object value;
+        synchronized (this) {
+            value = entries.get(key);
+            if (value != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        // copied outside of the lock, the cached value itself is never modified
+        return value == null ? null : copy(value);
+    }
+
+    /**
+     * @param input String or bytes, copied if mutable
+     * @param value value converted from the input, copied
+     */
+    void put(Object input, Object value) {
+        Key key = new Key(input instanceof byte[] ? ((byte[]) input).clone() : input);
+        if (key.size > maxBytes) {
+            return;
+        }
+        Object copy = copy(value);
+        synchronized (this) {
+            if (entries.put(key, copy) == null) {
+                bytes += key.size;
+            }
+            Iterator<Map.Entry<Key, Object>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries || bytes > maxBytes) {
+                bytes -= eldest.next().getKey().size;
+                eldest.remove();
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return share of the lookups that found a value, 0 before the first lookup
+     */
+    synchronized double hitRatio() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * @param value value in the representation of any output format: Avro binary, Avro generic or Connect data
+     * @return deep copy of the value, only sharing its immutable parts
+     */
+    static Object copy(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).clone();
+        }
+        if (value instanceof GenericContainer) {
+            return GenericData.get().deepCopy(((GenericContainer) value).getSchema(), value);
+        }
+        if (value instanceof Struct) {
+            Struct struct = (Struct) value;
+            Struct copy = new Struct(struct.schema());
+            for (Field field : struct.schema().fields()) {
+                Object fieldValue = struct.getWithoutDefault(field.name());
+                if (fieldValue != null) {
+                    copy.put(field, copy(fieldValue));
+                }
+            }
+            return copy;
+        }
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object item : (List<?>) value) {
+                copy.add(copy(item));
+            }
+            return copy;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        }
+        // strings, boxed primitives and decimals are immutable
+        return value;
+    }
+
+    /**
+     * String or bytes input, with its hash computed once.
+     */
+    private static final class Key {
+        private final Object input;
+        private final int hash;
+        private final int size;
+
+        Key(Object input) {
+            this.input = input;
+            if (input instanceof byte[]) {
+                this.hash = Arrays.hashCode((byte[]) input);
+                this.size = ((byte[]) input).length;
+            } else {
+                this.hash = input.hashCode();
+                this.size = ((String) input).length();
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (hash != other.hash) {
+                return false;
+            }
+            if (input instanceof byte[]) {
+                return other.input instanceof byte[] && Arrays.equals((byte[]) input, (byte[]) other.input);
+            }
+            return input.equals(other.input);
+        }
+    }
+}
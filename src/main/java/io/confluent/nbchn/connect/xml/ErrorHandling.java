@@ -0,0 +1,20 @@
+package io.confluent.nbchn.connect.xml;
+
+/**
+ * What happens to a record whose conversion fails. When failures are tolerated, the record carries the reason of
+ * the failure and the element path and field it happened at in its headers.
+ */
+public enum ErrorHandling {
+    /**
+     * The conversion throws, failing the task unless the errors of the connector are tolerated.
+     */
+    FAIL,
+    /**
+     * The record is output unchanged.
+     */
+    PASS_THROUGH,
+    /**
+     * The record is output with a null converted side and no schema.
+     */
+    NULL
+}
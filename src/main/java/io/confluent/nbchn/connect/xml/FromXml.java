@@ -20,7 +20,9 @@ import com.github.jcustenborder.kafka.connect.utils.config.DocumentationTip;
 import com.github.jcustenborder.kafka.connect.utils.config.Title;
 import com.github.jcustenborder.kafka.connect.utils.transformation.BaseKeyValueTransformation;
 import org.apache.avro.Schema;
+import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.connect.connector.ConnectRecord;
 import org.apache.kafka.connect.data.SchemaAndValue;
 import org.apache.kafka.connect.errors.DataException;
@@ -28,18 +30,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import org.xml.sax.InputSource;
 import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Title("FromXML")
 @Description("This transformation is used to read XML data stored as bytes or a string and convert " +
@@ -51,9 +62,16 @@ import java.util.Map;
 public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTransformation<R> {
     private static final Logger log = LoggerFactory.getLogger(FromXml.class);
     FromXmlConfig config;
-    Transformer transformer;
-    SAXParser parser;
-    GenericRecordHandler handler;
+    XmlConverterPool converters;
+    ConversionCache cache;
+    // resolves the file references of the records, null when records hold the documents
+    ClaimCheck claimCheck;
+    FromXmlMetrics metrics = FromXmlMetrics.DISABLED;
+    // threads converting slices of batches besides the calling thread, null when batches are not parallel
+    ExecutorService batchExecutor;
+    // keys of the stylesheets and schemas held in the shared caches
+    private final List<String> templatesKeys = new ArrayList<>();
+    private final List<String> schemaKeys = new ArrayList<>();
 
     protected FromXml(boolean isKey) {
         super(isKey);
@@ -66,54 +84,488 @@ public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTr
 
     @Override
     public void close() {
+        if (this.converters != null) {
+            this.converters.clear();
+        }
+        this.metrics.close();
+        shutdownBatchExecutor();
+        releaseShared();
     }
 
     @Override
-    protected SchemaAndValue processString(R record, org.apache.kafka.connect.data.Schema inputSchema, String input) {
-        try (Reader reader = new StringReader(input)) {
-            StreamResult result = new StreamResult(new StringWriter());
-            this.transformer.transform(new StreamSource(reader), result);
-            this.parser.parse(new InputSource(new StringReader(result.getWriter().toString())), this.handler);
-            return new SchemaAndValue(null, this.handler.getGenericRecord());
-        } catch (TransformerException | IOException | SAXException e) {
-            throw new DataException("Exception thrown while processing xml", e);
+    public R apply(R record) {
+        if (this.config.splitPath != null) {
+            throw new DataException(FromXmlConfig.SPLIT_PATH_CONFIG + " is set, split documents with flatMap()");
+        }
+        try {
+            return newRecord(record, process(record, input(record)));
+        } catch (DataException e) {
+            return tolerate(record, e);
+        }
+    }
+
+    /**
+     * Convert a batch of records, such as the records of one poll(). The batch is cut into one contiguous slice per
+     * thread of {@value FromXmlConfig#BATCH_THREADS_CONFIG}, the calling thread converting the first one, and each
+     * slice is converted with a single converter held from its first record to its last. Records not holding a
+     * String or bytes are converted like {@link #apply(ConnectRecord)} does.
+     * @param records records to convert
+     * @return converted records, in the order of the batch
+     * @throws DataException a record could not be converted and failures are not tolerated, the whole batch fails
+     */
+    public List<R> apply(List<R> records) {
+        if (this.config.splitPath != null) {
+            throw new DataException(FromXmlConfig.SPLIT_PATH_CONFIG + " is set, split documents with flatMap()");
+        }
+
+        Object[] batch = records.toArray();
+        int threads = this.batchExecutor == null ? 1 : Math.min(this.config.batchThreads, batch.length);
+        int sliceSize = threads <= 1 ? batch.length : (batch.length + threads - 1) / threads;
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (int from = sliceSize; from < batch.length; from += sliceSize) {
+            int sliceFrom = from;
+            int sliceTo = Math.min(from + sliceSize, batch.length);
+            slices.add(CompletableFuture.runAsync(() -> convertSlice(batch, sliceFrom, sliceTo), this.batchExecutor));
+        }
+
+        RuntimeException failure = null;
+        try {
+            convertSlice(batch, 0, Math.min(sliceSize, batch.length));
+        } catch (RuntimeException e) {
+            failure = e;
         }
+        // every slice is waited for, none must still be writing to the batch once this returns
+        for (CompletableFuture<Void> slice : slices) {
+            try {
+                slice.join();
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException ?
+                            (RuntimeException) e.getCause() :
+                            new DataException(e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        List<R> converted = new ArrayList<>(batch.length);
+        for (Object record : batch) {
+            @SuppressWarnings("unchecked")
+            R convertedRecord = (R) record;
+            converted.add(convertedRecord);
+        }
+        return converted;
+    }
+
+    /**
+     * Replace the records of a slice of the batch by their converted record.
+     */
+    private void convertSlice(Object[] batch, int from, int to) {
+        XmlConverter converter = this.converters.borrow();
+        try {
+            for (int i = from; i < to; i++) {
+                @SuppressWarnings("unchecked")
+                R record = (R) batch[i];
+                Object value = input(record).value();
+                try {
+                    if (value instanceof String) {
+                        batch[i] = newRecord(record, convert(value, ((String) value).length(), converter));
+                    } else if (value instanceof byte[]) {
+                        batch[i] = newRecord(record, convert(value, ((byte[]) value).length, converter));
+                    } else {
+                        batch[i] = apply(record);
+                    }
+                } catch (DataException e) {
+                    // the failed converter is dropped like a single record conversion does, its replacement is
+                    // released even when the failure is not tolerated
+                    converter = this.converters.borrow();
+                    batch[i] = tolerate(record, e);
+                }
+            }
+        } finally {
+            this.converters.release(converter);
+        }
+    }
+
+    /**
+     * @param record input record
+     * @return converted side of the record
+     */
+    protected abstract SchemaAndValue input(R record);
+
+    /**
+     * @param record input record
+     * @param transformed converted side of the record
+     * @return copy of the record with the converted side replaced
+     */
+    protected abstract R newRecord(R record, SchemaAndValue transformed);
+
+    @Override
+    protected SchemaAndValue processString(R record, org.apache.kafka.connect.data.Schema inputSchema, String input) {
+        return convert(input, input.length(), null);
     }
 
     @Override
     protected SchemaAndValue processBytes(R record, org.apache.kafka.connect.data.Schema inputSchema, byte[] input) {
-        try (InputStream inputStream = new ByteArrayInputStream(input)) {
-            Reader reader = new InputStreamReader(inputStream);
-            StreamResult result = new StreamResult(new StringWriter());
-            this.transformer.transform(new StreamSource(reader), result);
+        return convert(input, input.length, null);
+    }
+
+    /**
+     * @param input String, bytes or stream of a file
+     * @param converter converter parsing the input, decompressing it with its buffers
+     * @return parser input
+     */
+    private InputSource inputSource(Object input, XmlConverter converter) {
+        if (input instanceof String) {
+            return new InputSource(new StringReader((String) input));
+        }
+        if (input instanceof InputStream) {
+            return new InputSource((InputStream) input);
+        }
+        byte[] bytes = (byte[]) input;
+        CompressionType type = this.config.inputCompression.of(bytes);
+        if (type == CompressionType.NONE) {
+            // no reader for bytes on purpose, the parser detects the encoding from the BOM / xml declaration
+            return new InputSource(new ByteArrayInputStream(bytes));
+        }
+        try {
+            return new InputSource(converter.decompress(bytes, type));
+        } catch (KafkaException e) {
+            throw failure("Exception thrown while decompressing xml with " + type.name, e, null);
+        }
+    }
+
+
+    /**
+     * Convert a record whose document is split with {@value FromXmlConfig#SPLIT_PATH_CONFIG}, into one record per
+     * split element. Records are handed to the output as soon as their element ends, the document is never held as
+     * a whole. When the conversion fails, the records of the elements preceding the failure were already output, the
+     * failed record follows them when failures are tolerated.
+     * @param record record holding the document, as a String or bytes
+     * @param output receives the converted records, in document order
+     * @return number of records output
+     */
+    public int flatMap(R record, Consumer<R> output) {
+        if (this.config.splitPath == null) {
+            throw new DataException(FromXmlConfig.SPLIT_PATH_CONFIG + " is not set, use apply()");
+        }
+        if (this.config.onError == ErrorHandling.FAIL) {
+            return split(record, output);
+        }
+
+        int[] count = {0};
+        try {
+            return split(record, converted -> {
+                count[0]++;
+                output.accept(converted);
+            });
+        } catch (DataException e) {
+            output.accept(tolerate(record, e));
+            return count[0] + 1;
+        }
+    }
+
+    private int split(R record, Consumer<R> output) {
+        Object value = input(record).value();
+        if (this.claimCheck != null) {
+            return splitFile(record, value, output);
+        }
+        if (value instanceof String) {
+            return split(record, value, ((String) value).length(), output);
+        } else if (value instanceof byte[]) {
+            return split(record, value, ((byte[]) value).length, output);
+        }
+        throw new DataException("Expected String or bytes to split, got " +
+                (value == null ? "null" : value.getClass().getName()));
+    }
+
+    private int splitFile(R record, Object reference, Consumer<R> output) {
+        try (MappedFileInputStream in = new MappedFileInputStream(resolve(reference))) {
+            return split(record, in, in.size(), output);
+        } catch (IOException e) {
+            this.metrics.recordError();
+            throw failure("Exception thrown while processing xml", e, null);
+        }
+    }
 
-            return new SchemaAndValue(null, null);
-        } catch (IOException | TransformerException e) {
-            throw new DataException("Exception thrown while processing xml", e);
+    /**
+     * @param input String, bytes or stream of a file
+     */
+    private int split(R record, Object input, long size, Consumer<R> output) {
+        long start = this.metrics.nanoTime();
+        this.metrics.recordInput(size);
+        XmlConverter converter = this.converters.borrow();
+        try {
+            int count = converter.split(inputSource(input, converter), value -> output.accept(
+                    newRecord(record, new SchemaAndValue(this.converters.connectSchema(value), value))));
+            this.converters.release(converter);
+            this.metrics.recordConversion(start, count);
+            return count;
+        } catch (TransformerException | IOException | SAXException e) {
+            this.metrics.recordError();
+            throw failure("Exception thrown while processing xml", e, converter);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
         }
     }
 
+    /**
+     * @param input String or bytes
+     * @param size size of the input
+     * @param held converter held by the caller, which keeps it on success, null to borrow one for this input
+     */
+    private SchemaAndValue convert(Object input, int size, XmlConverter held) {
+        if (this.claimCheck != null) {
+            return convertFile(input, held);
+        }
+        long start = this.metrics.nanoTime();
+        this.metrics.recordInput(size);
+        if (this.cache != null) {
+            Object cached = this.cache.get(input);
+            if (cached != null) {
+                this.metrics.recordCacheHit();
+                this.metrics.recordConversion(start, 1);
+                return new SchemaAndValue(this.converters.connectSchema(cached), cached);
+            }
+            this.metrics.recordCacheMiss();
+        }
+
+        Object value = convert(input, held);
+        if (this.cache != null) {
+            this.cache.put(input, value);
+        }
+        this.metrics.recordConversion(start, 1);
+        return new SchemaAndValue(this.converters.connectSchema(value), value);
+    }
 
+    /**
+     * Convert the document a record refers to, streamed from its file. The file can change under the same
+     * reference, the conversion is not cached.
+     * @param reference path of the document, String or bytes
+     * @param held converter held by the caller, which keeps it on success, null to borrow one for this document
+     */
+    private SchemaAndValue convertFile(Object reference, XmlConverter held) {
+        long start = this.metrics.nanoTime();
+        try (MappedFileInputStream in = new MappedFileInputStream(resolve(reference))) {
+            this.metrics.recordInput(in.size());
+            Object value = convert(in, held);
+            this.metrics.recordConversion(start, 1);
+            return new SchemaAndValue(this.converters.connectSchema(value), value);
+        } catch (IOException e) {
+            this.metrics.recordError();
+            throw failure("Exception thrown while processing xml", e, null);
+        }
+    }
+
+    private Path resolve(Object reference) {
+        try {
+            return this.claimCheck.resolve(reference);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        }
+    }
+
+    /**
+     * @param input String, bytes or stream of a file
+     * @param held converter held by the caller, which keeps it on success, null to borrow one for this input
+     * @return converted value
+     */
+    private Object convert(Object input, XmlConverter held) {
+        XmlConverter converter = held != null ? held : this.converters.borrow();
+        try {
+            Object value = converter.convert(inputSource(input, converter));
+            if (held == null) {
+                this.converters.release(converter);
+            }
+            return value;
+        } catch (TransformerException | IOException | SAXException e) {
+            this.metrics.recordError();
+            throw failure("Exception thrown while processing xml", e, converter);
+        } catch (RuntimeException e) {
+            this.metrics.recordError();
+            throw e;
+        }
+    }
+
+    /**
+     * @param message description of the failure
+     * @param cause exception thrown by the conversion
+     * @param converter converter the document failed in, null if it failed before being parsed
+     * @return exception to throw, which locates the failure in the document when failures are tolerated
+     */
+    private DataException failure(String message, Exception cause, XmlConverter converter) {
+        if (this.config.onError == ErrorHandling.FAIL) {
+            return new DataException(message, cause);
+        }
+        return new ToleratedFailure(message, cause, converter == null ? null : converter.getErrorPath(),
+                converter == null ? null : converter.getErrorField());
+    }
+
+    /**
+     * @param record record whose conversion failed
+     * @param e failure of the conversion
+     * @return record passed on in place of the converted one, the failure described in its headers
+     * @throws DataException failures are not tolerated
+     */
+    private R tolerate(R record, DataException e) {
+        if (this.config.onError == ErrorHandling.FAIL) {
+            throw e;
+        }
+        this.metrics.recordTolerated();
+        R failed = newRecord(record, this.config.onError == ErrorHandling.NULL ? SchemaAndValue.NULL : input(record));
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        String prefix = this.config.onErrorHeaderPrefix;
+        failed.headers().addString(prefix + "reason",
+                cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName());
+        if (e instanceof ToleratedFailure) {
+            ToleratedFailure failure = (ToleratedFailure) e;
+            // the path is empty when the document failed before its root element
+            if (failure.path != null && !failure.path.isEmpty()) {
+                failed.headers().addString(prefix + "path", failure.path);
+            }
+            if (failure.field != null) {
+                failed.headers().addString(prefix + "field", failure.field);
+            }
+        }
+        return failed;
+    }
 
     @Override
     public void configure(Map<String, ?> settings) {
         this.config = new FromXmlConfig(settings);
+        // a reconfigured instance must not leave its previous metrics registered
+        this.metrics.close();
+        this.metrics = FromXmlMetrics.create(this.config, this.isKey);
+        shutdownBatchExecutor();
+        releaseShared();
 
         try {
-            this.transformer = this.config.transformerUrl.isEmpty() ?
-                    TransformerFactory.newInstance().newTransformer() :
-                    TransformerFactory.newInstance().newTransformer(new StreamSource(this.config.transformerUrl));
-        } catch (TransformerConfigurationException e) {
+            SchemaRoutes routes = new SchemaRoutes(this.config.outputFormat,
+                    this.config.attributesEnabled ? this.config.attributesPrefix : null);
+            if (!this.config.avroSchemaUrl.isEmpty() || !this.config.xmlSchemaPath.isEmpty()) {
+                // no stylesheet means no transformation, the document is parsed straight into the handler
+                Templates templates = this.config.transformerUrl.isEmpty() ? null :
+                        loadTemplates(this.config.transformerUrl);
+                Schema schema;
+                if (this.config.avroSchemaUrl.isEmpty()) {
+                    byte[] xsd = Files.readAllBytes(Paths.get(this.config.xmlSchemaPath));
+                    Path cacheDir = Paths.get(this.config.schemaCacheDir);
+                    // the namespace is part of the inferred schema
+                    String schemaKey = SharedCache.key(this.config.xmlSchemaPath + "?" + this.config.schemaNamespace,
+                            xsd);
+                    schema = SharedCache.SCHEMAS.acquire(schemaKey,
+                            () -> XsdSchemas.load(xsd, this.config.schemaNamespace, cacheDir));
+                    this.schemaKeys.add(schemaKey);
+                } else {
+                    schema = loadAvroSchema(this.config.avroSchemaUrl);
+                }
+                routes.setFallback(schema, templates);
+            }
+            for (String entry : this.config.routes) {
+                String[] route = SchemaRoutes.split(entry);
+                routes.add(route[0], loadAvroSchema(route[1]), route.length > 2 ? loadTemplates(route[2]) : null);
+            }
+            PathMapping mapping = PathMapping.of(this.config.mappingPaths, this.config.mappingAliases);
+            this.converters = new XmlConverterPool(routes, mapping, this.config, this.metrics);
+            this.claimCheck = this.config.claimCheckEnabled ? new ClaimCheck(this.config.claimCheckBaseDir) : null;
+            this.cache = null;
+            if (this.config.cacheMaxEntries > 0 && this.claimCheck == null) {
+                this.cache = new ConversionCache(this.config.cacheMaxEntries, this.config.cacheMaxBytes);
+                this.metrics.registerCache(this.cache);
+            }
+            if (this.config.batchThreads > 1) {
+                AtomicInteger threadCount = new AtomicInteger();
+                this.batchExecutor = Executors.newFixedThreadPool(this.config.batchThreads - 1, task -> {
+                    Thread thread = new Thread(task, "from-xml-batch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        } catch (IOException | TransformerConfigurationException e) {
             throw new IllegalStateException(e);
         }
+    }
 
-        try {
-            Schema schema = new Schema.Parser().parse(new File(this.config.avroSchemaUrl));
-            this.parser = SAXParserFactory.newInstance().newSAXParser();
-            this.handler = new GenericRecordHandler(schema);
+    /**
+     * @param path path or url of the stylesheet, relative to the working directory
+     * @return compiled stylesheet, shared with the transformations loading the same one
+     */
+    private Templates loadTemplates(String path) throws IOException, TransformerConfigurationException {
+        URL url = new File(".").toURI().resolve(path).toURL();
+        byte[] stylesheet = read(url);
+        String templatesKey = SharedCache.key(url.toString(), stylesheet);
+        Templates templates = SharedCache.TEMPLATES.acquire(templatesKey, () -> TransformerFactory.newInstance()
+                .newTemplates(new StreamSource(new ByteArrayInputStream(stylesheet), url.toString())));
+        this.templatesKeys.add(templatesKey);
+        return templates;
+    }
 
-        } catch (IOException | SAXException | ParserConfigurationException e) {
-            throw new IllegalStateException(e);
+    /**
+     * @param path path of the Avro schema
+     * @return parsed schema, shared with the transformations loading the same one
+     */
+    private Schema loadAvroSchema(String path) throws IOException {
+        byte[] avsc = Files.readAllBytes(Paths.get(path));
+        String schemaKey = SharedCache.key(path, avsc);
+        Schema schema = SharedCache.SCHEMAS.acquire(schemaKey,
+                () -> new Schema.Parser().parse(new String(avsc, StandardCharsets.UTF_8)));
+        this.schemaKeys.add(schemaKey);
+        return schema;
+    }
+
+    private static byte[] read(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private void shutdownBatchExecutor() {
+        if (this.batchExecutor != null) {
+            this.batchExecutor.shutdownNow();
+            this.batchExecutor = null;
+        }
+    }
+
+    // shared values are released once per configure, a transformation closed twice must not release them again
+    private void releaseShared() {
+        for (String templatesKey : this.templatesKeys) {
+            SharedCache.TEMPLATES.release(templatesKey);
+        }
+        this.templatesKeys.clear();
+        for (String schemaKey : this.schemaKeys) {
+            SharedCache.SCHEMAS.release(schemaKey);
+        }
+        this.schemaKeys.clear();
+    }
+
+    /**
+     * Failure of a conversion when failures are tolerated, caught before leaving the transformation. Created without
+     * stack trace since the record headers locate it in the document, not in the code.
+     */
+    private static final class ToleratedFailure extends DataException {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final String field;
+
+        private ToleratedFailure(String message, Throwable cause, String path, String field) {
+            super(message, cause);
+            this.path = path;
+            this.field = field;
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
         }
     }
 
@@ -123,9 +575,12 @@ public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTr
         }
 
         @Override
-        public R apply(R r) {
-            final SchemaAndValue transformed = process(r, new SchemaAndValue(r.keySchema(), r.key()));
+        protected SchemaAndValue input(R r) {
+            return new SchemaAndValue(r.keySchema(), r.key());
+        }
 
+        @Override
+        protected R newRecord(R r, SchemaAndValue transformed) {
             return r.newRecord(
                     r.topic(),
                     r.kafkaPartition(),
@@ -144,9 +599,12 @@ public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTr
         }
 
         @Override
-        public R apply(R r) {
-            final SchemaAndValue transformed = process(r, new SchemaAndValue(r.valueSchema(), r.value()));
+        protected SchemaAndValue input(R r) {
+            return new SchemaAndValue(r.valueSchema(), r.value());
+        }
 
+        @Override
+        protected R newRecord(R r, SchemaAndValue transformed) {
             return r.newRecord(
                     r.topic(),
                     r.kafkaPartition(),
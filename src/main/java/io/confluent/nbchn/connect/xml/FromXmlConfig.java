@@ -2,46 +2,224 @@ package io.confluent.nbchn.connect.xml;
 
 import com.github.jcustenborder.kafka.connect.utils.config.ConfigKeyBuilder;
 import com.github.jcustenborder.kafka.connect.utils.config.ConfigUtils;
-import com.github.jcustenborder.kafka.connect.utils.config.validators.ValidUrl;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
 
-import java.net.URL;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 class FromXmlConfig extends AbstractConfig {
 
     public static final String TRANSFORMER_PATH_CONFIG = "xslt.transformer.path";
-    // public static final String SCHEMA_PATH_CONFIG = "schema.xml.path";
+    public static final String SCHEMA_PATH_CONFIG = "schema.xml.path";
+    public static final String SCHEMA_CACHE_DIR_CONFIG = "schema.xml.cache.dir";
     public static final String AVRO_SCHEMA_PATH_CONFIG = "schema.avro.path";
+    public static final String ROUTES_CONFIG = "routes";
     public static final String PACKAGE_CONFIG = "package";
-    static final String SCHEMA_PATH_DOC = "Urls to the schemas to load. http and https paths are supported";
+    public static final String CONVERTER_POOL_SIZE_CONFIG = "converter.pool.size";
+    public static final String BATCH_THREADS_CONFIG = "batch.threads";
+    public static final String OUTPUT_FORMAT_CONFIG = "output.format";
+    public static final String PARSER_BACKEND_CONFIG = "parser.backend";
+    public static final String NAMESPACE_MATCHING_CONFIG = "namespace.matching";
+    public static final String NAMESPACE_URI_CONFIG = "namespace.uri";
+    public static final String ATTRIBUTES_ENABLED_CONFIG = "attributes.enabled";
+    public static final String ATTRIBUTES_PREFIX_CONFIG = "attributes.prefix";
+    public static final String MAPPING_PATHS_CONFIG = "mapping.paths";
+    public static final String MAPPING_ALIASES_CONFIG = "mapping.aliases";
+    public static final String CACHE_MAX_ENTRIES_CONFIG = "cache.max.entries";
+    public static final String CACHE_MAX_BYTES_CONFIG = "cache.max.bytes";
+    public static final String PROJECTION_ENABLED_CONFIG = "projection.enabled";
+    public static final String PROJECTION_STOP_EARLY_CONFIG = "projection.stop.early";
+    public static final String SPLIT_PATH_CONFIG = "split.path";
+    public static final String INPUT_COMPRESSION_CONFIG = "input.compression";
+    public static final String CLAIM_CHECK_ENABLED_CONFIG = "claim.check.enabled";
+    public static final String CLAIM_CHECK_BASE_DIR_CONFIG = "claim.check.base.dir";
+    public static final String ON_ERROR_CONFIG = "on.error";
+    public static final String ON_ERROR_HEADER_PREFIX_CONFIG = "on.error.header.prefix";
+    public static final String METRICS_ENABLED_CONFIG = "metrics.enabled";
+    public static final String METRICS_NAME_CONFIG = "metrics.name";
+    static final String SCHEMA_PATH_DOC = "Path of an XML schema to infer the Avro schema from, when " +
+            AVRO_SCHEMA_PATH_CONFIG + " is not set. The first global element of the XSD is the document root.";
+    static final String SCHEMA_CACHE_DIR_DOC = "Directory where schemas inferred from " + SCHEMA_PATH_CONFIG +
+            " are cached by XSD content hash, so that restarts do not infer them again. Defaults to a directory " +
+            "under java.io.tmpdir.";
     static final String TRANSFORMER_PATH_DOC = "Url to the xslt transformer file to load.";
-    static final String PACKAGE_DOC = "The java package xjc will use to generate the source code in. This name will be applied to the resulting schema";
+    static final String PACKAGE_DOC = "Namespace of the Avro records inferred from " + SCHEMA_PATH_CONFIG + ".";
     static final String AVRO_SCHEMA_DOC = "Avro schema url";
+    static final String ROUTES_DOC = "Schemas selected by the root element of the document, as <root element>" +
+            PathMapping.SEPARATOR + "<avro schema path> or <root element>" + PathMapping.SEPARATOR +
+            "<avro schema path>" + PathMapping.SEPARATOR + "<stylesheet path> entries. The root element is its " +
+            "local name, prefixed by its namespace URI in braces when it has one, e.g. {urn:orders}order. The " +
+            "stylesheet of a route transforms the documents of that route only and the schema then describes the " +
+            "transformed document. The route is selected from the first start tag, after " + MAPPING_PATHS_CONFIG +
+            " and " + MAPPING_ALIASES_CONFIG + " which keep the namespace of the elements they rename, the " +
+            "document is read once. Documents whose root element has no route are converted with " +
+            AVRO_SCHEMA_PATH_CONFIG + " or " + SCHEMA_PATH_CONFIG + " and " + TRANSFORMER_PATH_CONFIG + " when set, " +
+            "and fail otherwise.";
+    static final String CONVERTER_POOL_SIZE_DOC = "Maximum number of idle parser / transformer / handler sets kept " +
+            "for reuse. Concurrent conversions beyond this number use short lived instances.";
+    static final String BATCH_THREADS_DOC = "Number of threads converting the records of a batch given to " +
+            "FromXml#apply(List), the calling thread included. Each thread converts a contiguous slice of the batch " +
+            "with a single converter, the output keeps the order of the batch. 1 converts batches on the calling " +
+            "thread only.";
+    static final String OUTPUT_FORMAT_DOC = "Representation of the converted value. AVRO produces an Avro " +
+            "GenericRecord without Connect schema, STRUCT produces a Connect Struct whose schema is derived from the " +
+            "Avro schema once at startup. AVRO_BINARY produces the Avro binary encoding of the record as bytes, " +
+            "written while parsing without building the record.";
+    static final String PARSER_BACKEND_DOC = "Parser reading the documents. SAX uses the JDK SAX parser, STAX pulls " +
+            "the events from a StAX stream reader, ASYNC feeds the input bytes chunk by chunk to the Aalto " +
+            "non-blocking parser, except documents encoded other than UTF-8, US-ASCII or ISO-8859-1 which it pulls " +
+            "like STAX. Mapping, stylesheet and record building are the same whatever the parser.";
+    static final String NAMESPACE_MATCHING_DOC = "How elements are matched to fields. LOCAL_NAME matches the local " +
+            "name of elements whatever their namespace, URI also requires them to be in the namespace " +
+            NAMESPACE_URI_CONFIG + ", elements of other namespaces are then unknown, skipped with " +
+            PROJECTION_ENABLED_CONFIG + ". Prefixes are ignored either way.";
+    static final String NAMESPACE_URI_DOC = "Namespace URI of the elements matched to fields with " +
+            NAMESPACE_MATCHING_CONFIG + " URI. Empty matches the elements without namespace.";
+    static final String ATTRIBUTES_ENABLED_DOC = "Map the attributes of elements converted to records to the flat " +
+            "fields of these records, while parsing and without stylesheet. Attributes without matching field are " +
+            "ignored.";
+    static final String ATTRIBUTES_PREFIX_DOC = "Prefix of the fields attributes are mapped to, e.g. with attr_ the " +
+            "attribute id is mapped to the field attr_id. Empty maps attributes to the fields of the same name, " +
+            "like the schemas inferred from " + SCHEMA_PATH_CONFIG + " name them.";
+    static final String MAPPING_PATHS_DOC = "Element to field mappings applied while parsing, as " +
+            "<absolute element path>" + PathMapping.SEPARATOR + "<field> entries, e.g. /catalog/cd/title" +
+            PathMapping.SEPARATOR + "title. When set, only mapped elements are kept, nested in their closest mapped " +
+            "ancestor, the other elements of a mapped path are skipped. Covers stylesheets that only rename and " +
+            "flatten elements without an XSLT pass, the mapping is applied before the stylesheet if both are set.";
+    static final String MAPPING_ALIASES_DOC = "Element renames applied while parsing, as <element>" +
+            PathMapping.SEPARATOR + "<field> entries, wherever the element appears. Only used when " +
+            MAPPING_PATHS_CONFIG + " is empty.";
+    static final String CACHE_MAX_ENTRIES_DOC = "Maximum number of converted values kept by input, so that " +
+            "byte-identical documents are only converted once. Least recently used values are evicted first. 0 " +
+            "disables the cache. Every record gets its own copy of the cached value.";
+    static final String CACHE_MAX_BYTES_DOC = "Maximum total size of the inputs of the cached values, in bytes or " +
+            "characters for String inputs. Larger inputs are never cached.";
+    static final String PROJECTION_ENABLED_DOC = "Skip elements absent from the Avro schema, with everything they " +
+            "contain, instead of failing the conversion. Skipped content is never buffered nor converted.";
+    static final String PROJECTION_STOP_EARLY_DOC = "With " + PROJECTION_ENABLED_CONFIG + ", stop reading the " +
+            "document once every field of the root record is set and no array is left open. The rest of the " +
+            "document is then not even checked for well-formedness. Ignored for split documents.";
+    static final String SPLIT_PATH_DOC = "Absolute path of a repeated element, e.g. /catalog/cd, to convert each " +
+            "of these elements into its own record instead of converting the whole document. The Avro schema then " +
+            "describes the repeated element. The path applies to the document as mapped and transformed. Split " +
+            "documents are converted with FromXml#flatMap, the single record apply() rejects them.";
+    static final String INPUT_COMPRESSION_DOC = "Compression of the bytes values, decompressed as a stream while " +
+            "parsing without materializing the document. GZIP, SNAPPY, LZ4 and ZSTD use the codecs of kafka-clients, " +
+            "DETECT picks the codec from the magic bytes of each value and parses values without known magic bytes " +
+            "as is. String values and files read with " + CLAIM_CHECK_ENABLED_CONFIG + " are never decompressed.";
+    static final String CLAIM_CHECK_ENABLED_DOC = "Treat the String or bytes of the records as the path of the " +
+            "document rather than the document itself, relative to " + CLAIM_CHECK_BASE_DIR_CONFIG + ". The file " +
+            "is memory-mapped chunk by chunk and streamed to the parser, combine with " + SPLIT_PATH_CONFIG +
+            " and " + PROJECTION_ENABLED_CONFIG + " to keep the heap bounded for large documents. Converted files " +
+            "are never cached.";
+    static final String CLAIM_CHECK_BASE_DIR_DOC = "Directory holding the documents referenced by the records when " +
+            CLAIM_CHECK_ENABLED_CONFIG + " is set. References resolving outside of it, through .. or a symbolic " +
+            "link, fail the conversion.";
+    static final String ON_ERROR_DOC = "What to do with the records failing conversion. FAIL throws, " +
+            "PASS_THROUGH outputs the record unchanged and NULL outputs it with a null converted side. Tolerated " +
+            "failures are counted in the metrics and described in the headers of the record: reason, element path " +
+            "and field, each under " + ON_ERROR_HEADER_PREFIX_CONFIG + ". Split documents output the elements " +
+            "preceding the failure, then the failed record.";
+    static final String ON_ERROR_HEADER_PREFIX_DOC = "Prefix of the headers describing the failure of the records " +
+            "tolerated by " + ON_ERROR_CONFIG + ".";
+    static final String METRICS_ENABLED_DOC = "Register latency per conversion stage, throughput, payload size and " +
+            "error metrics in JMX under " + FromXmlMetrics.JMX_PREFIX + ".";
+    static final String METRICS_NAME_DOC = "Value of the transform tag of the metrics, telling apart the " +
+            "transformations of a worker. Defaults to from-xml. Each instance also has a unique instance tag, " +
+            "the tasks of a connector share the transform tag.";
 
-    // public final List<URL> schemaUrls;
     public final String transformerUrl;
     public final String avroSchemaUrl;
+    public final String xmlSchemaPath;
+    public final String schemaCacheDir;
+    public final String schemaNamespace;
+    public final List<String> routes;
+    public final int converterPoolSize;
+    public final int batchThreads;
+    public final OutputFormat outputFormat;
+    public final ParserBackend parserBackend;
+    public final NamespaceMatching namespaceMatching;
+    public final String namespaceUri;
+    public final boolean attributesEnabled;
+    public final String attributesPrefix;
+    public final List<String> mappingPaths;
+    public final List<String> mappingAliases;
+    public final int cacheMaxEntries;
+    public final long cacheMaxBytes;
+    public final boolean projectionEnabled;
+    public final boolean projectionStopEarly;
+    public final String[] splitPath;
+    public final InputCompression inputCompression;
+    public final boolean claimCheckEnabled;
+    public final String claimCheckBaseDir;
+    public final ErrorHandling onError;
+    public final String onErrorHeaderPrefix;
+    public final boolean metricsEnabled;
+    public final String metricsName;
 
     public FromXmlConfig(Map<?, ?> originals) {
         super(config(), originals);
-        // this.schemaUrls = ConfigUtils.urls(this, SCHEMA_PATH_CONFIG);
         this.transformerUrl = getString(TRANSFORMER_PATH_CONFIG);
         this.avroSchemaUrl = getString(AVRO_SCHEMA_PATH_CONFIG);
+        this.xmlSchemaPath = getString(SCHEMA_PATH_CONFIG);
+        this.routes = getList(ROUTES_CONFIG);
+        if (this.avroSchemaUrl.isEmpty() && this.xmlSchemaPath.isEmpty() && this.routes.isEmpty()) {
+            throw new ConfigException(AVRO_SCHEMA_PATH_CONFIG, this.avroSchemaUrl, "One of " +
+                    AVRO_SCHEMA_PATH_CONFIG + ", " + SCHEMA_PATH_CONFIG + " and " + ROUTES_CONFIG + " must be set");
+        }
+        this.schemaCacheDir = getString(SCHEMA_CACHE_DIR_CONFIG).isEmpty() ?
+                Paths.get(System.getProperty("java.io.tmpdir"), "from-xml-schemas").toString() :
+                getString(SCHEMA_CACHE_DIR_CONFIG);
+        this.schemaNamespace = getString(PACKAGE_CONFIG);
+        this.converterPoolSize = getInt(CONVERTER_POOL_SIZE_CONFIG);
+        this.batchThreads = getInt(BATCH_THREADS_CONFIG);
+        this.outputFormat = ConfigUtils.getEnum(OutputFormat.class, this, OUTPUT_FORMAT_CONFIG);
+        this.parserBackend = ConfigUtils.getEnum(ParserBackend.class, this, PARSER_BACKEND_CONFIG);
+        this.namespaceMatching = ConfigUtils.getEnum(NamespaceMatching.class, this, NAMESPACE_MATCHING_CONFIG);
+        this.namespaceUri = getString(NAMESPACE_URI_CONFIG);
+        this.attributesEnabled = getBoolean(ATTRIBUTES_ENABLED_CONFIG);
+        this.attributesPrefix = getString(ATTRIBUTES_PREFIX_CONFIG);
+        this.mappingPaths = getList(MAPPING_PATHS_CONFIG);
+        this.mappingAliases = getList(MAPPING_ALIASES_CONFIG);
+        this.cacheMaxEntries = getInt(CACHE_MAX_ENTRIES_CONFIG);
+        this.cacheMaxBytes = getLong(CACHE_MAX_BYTES_CONFIG);
+        this.projectionEnabled = getBoolean(PROJECTION_ENABLED_CONFIG);
+        this.projectionStopEarly = getBoolean(PROJECTION_STOP_EARLY_CONFIG);
+        this.splitPath = splitPath(getString(SPLIT_PATH_CONFIG));
+        this.inputCompression = ConfigUtils.getEnum(InputCompression.class, this, INPUT_COMPRESSION_CONFIG);
+        this.claimCheckEnabled = getBoolean(CLAIM_CHECK_ENABLED_CONFIG);
+        this.claimCheckBaseDir = getString(CLAIM_CHECK_BASE_DIR_CONFIG);
+        if (this.claimCheckEnabled && this.claimCheckBaseDir.isEmpty()) {
+            throw new ConfigException(CLAIM_CHECK_BASE_DIR_CONFIG, this.claimCheckBaseDir,
+                    "Must be set when " + CLAIM_CHECK_ENABLED_CONFIG + " is true");
+        }
+        this.onError = ConfigUtils.getEnum(ErrorHandling.class, this, ON_ERROR_CONFIG);
+        this.onErrorHeaderPrefix = getString(ON_ERROR_HEADER_PREFIX_CONFIG);
+        this.metricsEnabled = getBoolean(METRICS_ENABLED_CONFIG);
+        this.metricsName = getString(METRICS_NAME_CONFIG);
     }
 
     public static ConfigDef config() {
 
         return new ConfigDef()
-//                .define(
-//                        ConfigKeyBuilder.of(SCHEMA_PATH_CONFIG, ConfigDef.Type.LIST)
-//                                .documentation(SCHEMA_PATH_DOC)
-//                                .importance(ConfigDef.Importance.HIGH)
-//                                .validator(new ValidUrl())
-//                                .build())
                 .define(
+                        ConfigKeyBuilder.of(SCHEMA_PATH_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(SCHEMA_PATH_DOC)
+                                .importance(ConfigDef.Importance.HIGH)
+                                .defaultValue("")
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(SCHEMA_CACHE_DIR_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(SCHEMA_CACHE_DIR_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue("")
+                                .build()
+                ).define(
                         ConfigKeyBuilder.of(PACKAGE_CONFIG, ConfigDef.Type.STRING)
                                 .documentation(PACKAGE_DOC)
                                 .importance(ConfigDef.Importance.HIGH)
@@ -59,6 +237,172 @@ class FromXmlConfig extends AbstractConfig {
                                 .importance(ConfigDef.Importance.LOW)
                                 .defaultValue("")
                                 .build()
+                ).define(
+                        ConfigKeyBuilder.of(ROUTES_CONFIG, ConfigDef.Type.LIST)
+                                .documentation(ROUTES_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(Collections.emptyList())
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(CONVERTER_POOL_SIZE_CONFIG, ConfigDef.Type.INT)
+                                .documentation(CONVERTER_POOL_SIZE_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(4)
+                                .validator(ConfigDef.Range.atLeast(1))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(BATCH_THREADS_CONFIG, ConfigDef.Type.INT)
+                                .documentation(BATCH_THREADS_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(1)
+                                .validator(ConfigDef.Range.atLeast(1))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(OUTPUT_FORMAT_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(OUTPUT_FORMAT_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(OutputFormat.AVRO.name())
+                                .validator(validEnum(OutputFormat.class))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(PARSER_BACKEND_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(PARSER_BACKEND_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(ParserBackend.SAX.name())
+                                .validator(validEnum(ParserBackend.class))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(NAMESPACE_MATCHING_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(NAMESPACE_MATCHING_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(NamespaceMatching.LOCAL_NAME.name())
+                                .validator(validEnum(NamespaceMatching.class))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(NAMESPACE_URI_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(NAMESPACE_URI_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue("")
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(ATTRIBUTES_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                                .documentation(ATTRIBUTES_ENABLED_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(false)
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(ATTRIBUTES_PREFIX_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(ATTRIBUTES_PREFIX_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue("")
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(MAPPING_PATHS_CONFIG, ConfigDef.Type.LIST)
+                                .documentation(MAPPING_PATHS_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(Collections.emptyList())
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(MAPPING_ALIASES_CONFIG, ConfigDef.Type.LIST)
+                                .documentation(MAPPING_ALIASES_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(Collections.emptyList())
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(CACHE_MAX_ENTRIES_CONFIG, ConfigDef.Type.INT)
+                                .documentation(CACHE_MAX_ENTRIES_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(0)
+                                .validator(ConfigDef.Range.atLeast(0))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(CACHE_MAX_BYTES_CONFIG, ConfigDef.Type.LONG)
+                                .documentation(CACHE_MAX_BYTES_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(16L * 1024 * 1024)
+                                .validator(ConfigDef.Range.atLeast(0))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(PROJECTION_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                                .documentation(PROJECTION_ENABLED_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(false)
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(PROJECTION_STOP_EARLY_CONFIG, ConfigDef.Type.BOOLEAN)
+                                .documentation(PROJECTION_STOP_EARLY_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(false)
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(SPLIT_PATH_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(SPLIT_PATH_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue("")
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(INPUT_COMPRESSION_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(INPUT_COMPRESSION_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(InputCompression.NONE.name())
+                                .validator(validEnum(InputCompression.class))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(CLAIM_CHECK_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                                .documentation(CLAIM_CHECK_ENABLED_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(false)
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(CLAIM_CHECK_BASE_DIR_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(CLAIM_CHECK_BASE_DIR_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue("")
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(ON_ERROR_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(ON_ERROR_DOC)
+                                .importance(ConfigDef.Importance.MEDIUM)
+                                .defaultValue(ErrorHandling.FAIL.name())
+                                .validator(validEnum(ErrorHandling.class))
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(ON_ERROR_HEADER_PREFIX_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(ON_ERROR_HEADER_PREFIX_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue("xml.error.")
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(METRICS_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                                .documentation(METRICS_ENABLED_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue(false)
+                                .build()
+                ).define(
+                        ConfigKeyBuilder.of(METRICS_NAME_CONFIG, ConfigDef.Type.STRING)
+                                .documentation(METRICS_NAME_DOC)
+                                .importance(ConfigDef.Importance.LOW)
+                                .defaultValue("")
+                                .build()
                 );
     }
+
+    /**
+     * @return validator accepting the names of the constants of the enum, which {@link ConfigUtils#getEnum} reads
+     */
+    private static ConfigDef.Validator validEnum(Class<? extends Enum<?>> enumClass) {
+        return ConfigDef.ValidString.in(Arrays.stream(enumClass.getEnumConstants())
+                .map(Enum::name)
+                .toArray(String[]::new));
+    }
+
+    private static String[] splitPath(String path) {
+        if (path.isEmpty()) {
+            return null;
+        }
+        if (!path.startsWith("/") || path.length() == 1 || path.contains("//") || path.endsWith("/")) {
+            throw new ConfigException(SPLIT_PATH_CONFIG, path, "Element path must be absolute, e.g. /catalog/cd");
+        }
+        return path.substring(1).split("/");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,244 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.Measurable;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.MetricsReporter;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Meter;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.utils.Time;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of a {@link FromXml} instance, registered in JMX under {@value #JMX_PREFIX}.
+ * When metrics are disabled every method returns immediately, not even reading the clock.
+ * Without stylesheet the document is parsed and the record built in the same pass, which is measured as the parse
+ * stage. With a stylesheet, the processor first parses the input into its source tree then transforms it while the
+ * record is built from its output, which are measured as two stages split at the first output event.
+ */
+class FromXmlMetrics {
+
+    static final String JMX_PREFIX = "kafka.connect.xml";
+    static final String GROUP = "from-xml-metrics";
+    static final FromXmlMetrics DISABLED = new FromXmlMetrics(null, Collections.emptyMap());
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    private static final double NANOS_PER_MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int PERCENTILES_SIZE_IN_BYTES = 4000;
+    // 1000 linear buckets of 0.1 ms, conversions mostly take well under a millisecond. Slower ones land in the last
+    // bucket, the -max metrics still report them exactly
+    private static final double MAX_LATENCY_MS = 100;
+    private static final double MAX_PAYLOAD_SIZE = 10 * 1024 * 1024;
+
+    private final Metrics metrics;
+    private final Map<String, String> tags;
+    private final Sensor conversionTime;
+    private final Sensor parseTime;
+    private final Sensor xsltParseTime;
+    private final Sensor xsltTransformTime;
+    private final Sensor input;
+    private final Sensor recordsOut;
+    private final Sensor errors;
+    private final Sensor tolerated;
+    // only registered when the conversion cache is enabled
+    private Sensor cacheHits;
+    private Sensor cacheMisses;
+
+    private FromXmlMetrics(Metrics metrics, Map<String, String> tags) {
+        this.metrics = metrics;
+        this.tags = tags;
+        if (metrics == null) {
+            this.conversionTime = null;
+            this.parseTime = null;
+            this.xsltParseTime = null;
+            this.xsltTransformTime = null;
+            this.input = null;
+            this.recordsOut = null;
+            this.errors = null;
+            this.tolerated = null;
+            return;
+        }
+
+        this.conversionTime = latencySensor("conversion-time",
+                "time to convert a record, from the raw input to the output value");
+        this.parseTime = latencySensor("parse-time",
+                "time to parse a document and build the record when no stylesheet is configured");
+        this.xsltParseTime = latencySensor("xslt-parse-time",
+                "time for the XSLT processor to parse a document into its source tree");
+        this.xsltTransformTime = latencySensor("xslt-transform-time",
+                "time to transform a document and build the record from the transformation output");
+
+        this.input = metrics.sensor("input");
+        this.input.add(new Meter(metricName("bytes-in-rate", "size of the inputs per second, in bytes or " +
+                        "characters for String values"),
+                metricName("bytes-in-total", "total size of the inputs")));
+        this.input.add(metricName("payload-size-avg", "average size of an input"), new Avg());
+        this.input.add(metricName("payload-size-max", "maximum size of an input"), new Max());
+        this.input.add(new Percentiles(PERCENTILES_SIZE_IN_BYTES, MAX_PAYLOAD_SIZE, Percentiles.BucketSizing.LINEAR,
+                new Percentile(metricName("payload-size-p50", "median size of an input"), 50),
+                new Percentile(metricName("payload-size-p99", "99th percentile of the input size"), 99)));
+
+        this.recordsOut = metrics.sensor("records-out");
+        this.recordsOut.add(new Meter(metricName("records-out-rate", "records converted per second"),
+                metricName("records-out-total", "total records converted")));
+
+        this.errors = metrics.sensor("errors");
+        this.errors.add(new Meter(metricName("error-rate", "records failing conversion per second"),
+                metricName("error-total", "total records failing conversion")));
+        this.tolerated = metrics.sensor("errors-tolerated");
+        this.tolerated.add(new Meter(metricName("error-tolerated-rate", "failed records passed on per second"),
+                metricName("error-tolerated-total", "total failed records passed on")));
+    }
+
+    /**
+     * @param config transformation configuration
+     * @param isKey whether the transformation converts keys or values
+     * @return metrics of the transformation, {@link #DISABLED} if metrics are not enabled
+     */
+    static FromXmlMetrics create(FromXmlConfig config, boolean isKey) {
+        if (!config.metricsEnabled) {
+            return DISABLED;
+        }
+
+        // tasks of a connector share their configuration, the instance tag keeps their names apart
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("transform", config.metricsName.isEmpty() ? "from-xml" : config.metricsName);
+        tags.put("side", isKey ? "key" : "value");
+        tags.put("instance", String.valueOf(INSTANCES.incrementAndGet()));
+        Metrics metrics = new Metrics(
+                new MetricConfig(),
+                Collections.<MetricsReporter>singletonList(new JmxReporter(JMX_PREFIX)),
+                Time.SYSTEM
+        );
+        return new FromXmlMetrics(metrics, tags);
+    }
+
+    /**
+     * @return current time in nanoseconds, 0 when metrics are disabled
+     */
+    long nanoTime() {
+        return metrics == null ? 0L : System.nanoTime();
+    }
+
+    void recordInput(long size) {
+        if (metrics != null) {
+            input.record(size);
+        }
+    }
+
+    /**
+     * @param start start of the conversion, from {@link #nanoTime()}
+     * @param records number of records the input was converted to
+     */
+    void recordConversion(long start, int records) {
+        if (metrics != null) {
+            conversionTime.record((System.nanoTime() - start) / NANOS_PER_MS);
+            recordsOut.record(records);
+        }
+    }
+
+    /**
+     * @param start start of the parse, from {@link #nanoTime()}
+     */
+    void recordParse(long start) {
+        if (metrics != null) {
+            parseTime.record((System.nanoTime() - start) / NANOS_PER_MS);
+        }
+    }
+
+    /**
+     * @param start start of the parse, from {@link #nanoTime()}
+     * @param outputStart time of the first event of the transformation output
+     */
+    void recordTransform(long start, long outputStart) {
+        if (metrics != null) {
+            xsltParseTime.record((outputStart - start) / NANOS_PER_MS);
+            xsltTransformTime.record((System.nanoTime() - outputStart) / NANOS_PER_MS);
+        }
+    }
+
+    void recordError() {
+        if (metrics != null) {
+            errors.record();
+        }
+    }
+
+    /**
+     * Count a failed record passed on rather than failing the conversion.
+     */
+    void recordTolerated() {
+        if (metrics != null) {
+            tolerated.record();
+        }
+    }
+
+    /**
+     * Register the metrics of the conversion cache, hits and misses are then recorded by the caller.
+     * @param cache conversion cache of the transformation
+     */
+    void registerCache(ConversionCache cache) {
+        if (metrics == null) {
+            return;
+        }
+        cacheHits = metrics.sensor("cache-hits");
+        cacheHits.add(new Meter(metricName("cache-hit-rate", "records converted from the cache per second"),
+                metricName("cache-hit-total", "total records converted from the cache")));
+        cacheMisses = metrics.sensor("cache-misses");
+        cacheMisses.add(new Meter(metricName("cache-miss-rate", "records missing the cache per second"),
+                metricName("cache-miss-total", "total records missing the cache")));
+        metrics.addMetric(metricName("cache-hit-ratio", "share of the records converted from the cache"),
+                (Measurable) (config, now) -> cache.hitRatio());
+        metrics.addMetric(metricName("cache-entries", "number of cached values"),
+                (Measurable) (config, now) -> cache.size());
+        metrics.addMetric(metricName("cache-bytes", "total size of the cached inputs"),
+                (Measurable) (config, now) -> cache.bytes());
+    }
+
+    void recordCacheHit() {
+        if (cacheHits != null) {
+            cacheHits.record();
+        }
+    }
+
+    void recordCacheMiss() {
+        if (cacheMisses != null) {
+            cacheMisses.record();
+        }
+    }
+
+    boolean isEnabled() {
+        return metrics != null;
+    }
+
+    void close() {
+        if (metrics != null) {
+            metrics.close();
+        }
+    }
+
+    private Sensor latencySensor(String name, String description) {
+        Sensor sensor = metrics.sensor(name);
+        sensor.add(metricName(name + "-avg", "average " + description + ", in ms"), new Avg());
+        sensor.add(metricName(name + "-max", "maximum " + description + ", in ms"), new Max());
+        sensor.add(new Percentiles(PERCENTILES_SIZE_IN_BYTES, MAX_LATENCY_MS, Percentiles.BucketSizing.LINEAR,
+                new Percentile(metricName(name + "-p50", "median " + description + ", in ms"), 50),
+                new Percentile(metricName(name + "-p95", "95th percentile " + description + ", in ms"), 95),
+                new Percentile(metricName(name + "-p99", "99th percentile " + description + ", in ms"), 99)));
+        return sensor;
+    }
+
+    private MetricName metricName(String name, String description) {
+        return metrics.metricName(name, GROUP, description, tags);
+    }
+}
@@ -1,234 +1,667 @@
 package io.confluent.nbchn.connect.xml;
 
 import org.apache.avro.Schema;
-import org.apache.avro.generic.*;
+import org.apache.avro.generic.GenericRecord;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.function.Consumer;
 
 /**
  * XML SAX parser that transform XML to Avro GenericRecord according to the provided schema.
+ * The handler only walks the schema, the output is produced by a {@link ValueBuilder} which lets the same handler
+ * build Connect Struct or Avro binary instead.
+ * With a split path, the schema describes the repeated element at that path rather than the document: each element
+ * is built on its own and handed to the split output as soon as it ends, everything else is skipped, so memory
+ * stays bounded by the size of one element whatever the size of the document.
+ * With projection, elements absent from the schema are skipped with their subtree instead of failing the
+ * conversion, and the parse can stop as soon as every field of the root record is set.
+ * When the plan is compiled with an attribute prefix, the attributes of record elements are converted to the record
+ * fields they map to, as if they were the first child elements. Other attributes are ignored.
+ * Elements are matched to fields by local name, prefixes are ignored, and optionally by namespace URI: elements of
+ * another namespace are then unknown.
  */
 
 public class GenericRecordHandler extends DefaultHandler {
 
-    private final Schema schema;
-    private final Deque<KeyValue> containers;
+    private final SchemaNode root;
+    private final ValueBuilder builder;
+    private final Deque<Element> elements;
+    private final String[] splitPath;
 
-    private boolean isInArray;
+    // text of the current flat element, accumulated across characters() calls and reused between elements
+    private char[] text;
+    private int textLength;
+
+    private boolean isComplete;
+
+    // depth of the subtree being skipped, off the split path or absent from the schema
+    private int skippedDepth;
+
+    // split mode: number of split path elements open outside of a record
+    private Consumer<Object> splitOutput;
+    private int splitDepth;
+    private int splitCount;
+
+    private boolean projection;
+    private boolean stopEarly;
+
+    // namespace URI of the elements matched to fields, null to match local names whatever their namespace
+    private String namespaceUri;
+
+    // time of the first event of the document, only read from the clock when timing is enabled
+    private boolean isTimed;
+    private long documentStart;
 
     /**
      * @param schema Avro schema of the output
      */
     public GenericRecordHandler(Schema schema) {
-        this.schema = schema;
-        this.containers = new ArrayDeque<>();
-        this.isInArray = false;
+        this(SchemaNode.compile(schema), new AvroValueBuilder());
+    }
+
+    /**
+     * @param root compiled navigation plan of the output schema, can be shared between handlers
+     * @param builder builder of the output, must match the format the plan was compiled for
+     */
+    GenericRecordHandler(SchemaNode root, ValueBuilder builder) {
+        this(root, builder, null);
+    }
+
+    /**
+     * @param root compiled navigation plan of the split element schema, can be shared between handlers
+     * @param builder builder of the output, must match the format the plan was compiled for
+     * @param splitPath names of the elements from the document root to the split element, null to convert the
+     *                  whole document
+     */
+    GenericRecordHandler(SchemaNode root, ValueBuilder builder, String[] splitPath) {
+        this.root = root;
+        this.builder = builder;
+        this.splitPath = splitPath;
+        this.elements = new ArrayDeque<>();
+        this.text = new char[256];
+        this.isComplete = false;
+    }
+
+    @Override
+    public void startDocument () throws SAXException {
+        // the handler is reused across documents, drop anything left over by a failed parse
+        elements.clear();
+        builder.reset();
+        textLength = 0;
+        isComplete = false;
+        splitDepth = 0;
+        skippedDepth = 0;
+        splitCount = 0;
+        if (isTimed) {
+            documentStart = System.nanoTime();
+        }
     }
 
     @Override
     public void startElement (String uri, String localName, String qName, Attributes attributes) throws SAXException {
-        Schema currentSchema = containers.isEmpty() ? schema : getChildSchema(qName, containers.peekLast().getSchema());
-        generateAndStackEnvelope(qName, currentSchema);
+        if (skippedDepth > 0) {
+            skippedDepth++;
+            return;
+        }
+        // readers that are not namespace aware only report qualified names
+        String name = localName.isEmpty() ? qName : localName;
+        if (elements.isEmpty()) {
+            if (splitPath != null && !enterSplitPath(name)) {
+                return;
+            }
+            startValue(qName, root, false, attributes);
+            return;
+        }
+
+        Element parent = elements.peekLast();
+        switch (parent.getState()) {
+            case RECORD:
+                startField(parent, uri, name, qName, attributes);
+                break;
+            case FLAT:
+                if (!parent.isArrayItem()) {
+                    throw new InvalidDocumentException("Unexpected element " + qName + " in flat element " +
+                            parent.getKey());
+                }
+                // the repeated element wraps the items rather than being one: <tags><tag>a</tag><tag>b</tag></tags>
+                parent.setState(State.WRAPPER);
+                textLength = 0;
+                startValue(qName, parent.getNode(), true, attributes);
+                break;
+            case WRAPPER:
+                startValue(qName, parent.getNode(), true, attributes);
+                break;
+            case ARRAY:
+                startValue(qName, parent.getNode().getElement(), true, attributes);
+                break;
+            case MAP:
+                builder.key(name);
+                startValue(qName, parent.getNode().getElement(), false, attributes);
+                break;
+            default:
+                throw new IllegalStateException(parent.getState().name());
+        }
     }
 
     @Override
     public void endElement (String uri, String localName, String qName) throws SAXException {
-        if (containers.size() > 1) {
-            KeyValue childKV = containers.pollLast();
-            attachChildToParent(containers.peekLast(), childKV);
+        if (skippedDepth > 0) {
+            skippedDepth--;
+            return;
+        }
+        if (splitPath != null && elements.isEmpty()) {
+            splitDepth--;
+            return;
+        }
+
+        // left open until its value is built, so that a failure is located at the element
+        Element element = elements.peekLast();
+        if (element == null) {
+            throw new InvalidDocumentException("Unexpected end of element " + qName);
+        }
+
+        switch (element.getState()) {
+            case FLAT:
+                value(element.getNode());
+                textLength = 0;
+                break;
+            case RECORD:
+                endRecord(element);
+                break;
+            case ARRAY:
+                builder.endArray(element.getNode());
+                break;
+            case MAP:
+                builder.endMap(element.getNode());
+                break;
+            default:
+                // the items of a wrapper went to the array of the enclosing record
+                break;
+        }
+        elements.pollLast();
+
+        if (elements.isEmpty() && splitPath != null) {
+            splitOutput.accept(builder.getValue());
+            builder.reset();
+            splitCount++;
+        } else if (elements.isEmpty()) {
+            isComplete = true;
+        } else {
+            filled(elements.peekLast(), element.getNode());
         }
     }
 
     @Override
     public void characters (char[] ch, int start, int length) throws SAXException {
-        if (!containers.isEmpty()) {
-            containers.peekLast().setStringValue(new String(ch, start, length));
-        } else {
-            throw new SAXException();
+        if (skippedDepth > 0) {
+            return;
+        }
+        if (elements.isEmpty()) {
+            if (splitPath != null) {
+                // text between split elements
+                return;
+            }
+            throw new InvalidDocumentException("Text outside of the root element");
+        }
+        // text outside of flat elements is only indentation
+        if (elements.peekLast().getState() == State.FLAT) {
+            if (textLength + length > text.length) {
+                text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+            }
+            System.arraycopy(ch, start, text, textLength, length);
+            textLength += length;
         }
     }
 
 
     public GenericRecord getGenericRecord () throws SAXException {
-        if((containers.size() == 1) && (containers.peekLast().getValue() instanceof GenericRecord)) {
-            return (GenericRecord) containers.pollLast().getValue();
+        Object value = getValue();
+        if (value instanceof GenericRecord) {
+            return (GenericRecord) value;
+        }
+
+        throw new SAXException();
+    }
+
+    /**
+     * @return the record of the last parsed document, in the representation of the handler's {@link ValueBuilder}
+     * @throws SAXException document not parsed or not complete
+     */
+    public Object getValue () throws SAXException {
+        if (isComplete) {
+            return builder.getValue();
         }
 
         throw new SAXException();
     }
 
     public Schema getSchema () {
-        return this.schema;
+        return this.root.getSchema();
     }
 
     /**
-     * Attach child to parent.
-     * If parent is a Record, the child value (nested or flat) is assigned to parent as a Field.
-     * If parent is an Array, the child value is added to it, if child is a flat value, it is wrapped into a Record.
-     * @param parent previous element on stack
-     * @param child current element
-     * @throws SAXException child's value type is unsupported
+     * @return qualified names of the elements open, from the document root, e.g. {@code /order/lines/line}. After a
+     * failed parse, path of the element the conversion failed at
      */
-    private void attachChildToParent(KeyValue parent, KeyValue child) throws SAXException {
-        if (parent.getValue() instanceof GenericRecord) {
-            GenericRecord parentRecord = (GenericRecord) parent.getValue();
-            if(child.getValue() instanceof String) {
-                Schema.Type type = parentRecord.getSchema().getField(child.getKey()).schema().getType();
-                parentRecord.put(child.getKey(), ensureType(type, (String) child.getValue()));
-            } else if (child.getValue() instanceof GenericContainer) {
-                parentRecord.put(child.getKey(), child.getValue());
-            } else {
-                throw new SAXException();
+    String getPath() {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; splitPath != null && i < splitDepth; i++) {
+            path.append('/').append(splitPath[i]);
+        }
+        for (Element element : elements) {
+            path.append('/').append(element.getKey());
+        }
+        return path.toString();
+    }
+
+    /**
+     * @return schema field of the innermost element open, null if none. After a failed parse, field the conversion
+     * failed at
+     */
+    String getField() {
+        Element element = elements.peekLast();
+        return element == null ? null : element.getNode().getName();
+    }
+
+    /**
+     * @param splitOutput receives the value of each split element of the next documents, in document order
+     */
+    void setSplitOutput(Consumer<Object> splitOutput) {
+        this.splitOutput = splitOutput;
+    }
+
+    /**
+     * @return number of split elements of the last document handed to the split output
+     */
+    int getSplitCount() {
+        return splitCount;
+    }
+
+    /**
+     * @param projection skip the elements absent from the schema instead of failing
+     * @param stopEarly stop the parse by throwing {@link EarlyStop#INSTANCE} once every field of the root record
+     *                  is set, the value is then complete. Ignored without projection or when splitting
+     */
+    void setProjection(boolean projection, boolean stopEarly) {
+        this.projection = projection;
+        this.stopEarly = projection && stopEarly && splitPath == null;
+    }
+
+    /**
+     * @param namespaceUri namespace URI of the elements matched to fields, empty for elements without namespace,
+     *                     null to match elements on their local name only
+     */
+    void setNamespace(String namespaceUri) {
+        this.namespaceUri = namespaceUri == null ? null : namespaceUri.intern();
+    }
+
+    /**
+     * @param isTimed record the time the handler receives the start of each document
+     */
+    void setTimed(boolean isTimed) {
+        this.isTimed = isTimed;
+    }
+
+    /**
+     * @return time in nanoseconds the last document started, only set when the handler is timed
+     */
+    long getDocumentStart() {
+        return documentStart;
+    }
+
+    /**
+     * Walk down the split path outside of records, skipping the subtrees off the path.
+     * @param name local name of the element starting
+     * @return whether the element is a split element
+     */
+    private boolean enterSplitPath(String name) {
+        if (!name.equals(splitPath[splitDepth])) {
+            skippedDepth++;
+            return false;
+        }
+        if (splitDepth == splitPath.length - 1) {
+            return true;
+        }
+        splitDepth++;
+        return false;
+    }
+
+    /**
+     * Convert the attributes mapped to fields of the record just started, through the text buffer which is not in
+     * use outside of flat elements.
+     * @param attributes attributes of the record element
+     */
+    private void attributes(Attributes attributes) throws SAXException {
+        Element record = elements.peekLast();
+        if (!record.getNode().hasAttributes()) {
+            return;
+        }
+        for (int i = 0; i < attributes.getLength(); i++) {
+            String localName = attributes.getLocalName(i);
+            SchemaNode field = record.getNode().attribute(localName == null || localName.isEmpty() ?
+                    attributes.getQName(i) : localName);
+            if (field == null) {
+                continue;
             }
-        } else if (parent.getValue() instanceof GenericArray) {
-            GenericArray parentArray = (GenericArray) parent.getValue();
-            if(child.getValue() instanceof String) {
-                Schema elementSchema = parentArray.getSchema().getElementType();
-                GenericRecord wrappingRecord = new GenericRecordBuilder(elementSchema)
-                    .set(
-                        child.getKey(),
-                        ensureType(elementSchema.getField(child.getKey()).schema().getType(), (String) child.getValue())
-                    )
-                    .build();
-                parentArray.add(wrappingRecord);
-            } else if (child.getValue() instanceof GenericContainer) {
-                parentArray.add(child.getValue());
-            } else {
-                throw new SAXException();
+            String value = attributes.getValue(i);
+            if (value.length() > text.length) {
+                text = new char[Math.max(text.length * 2, value.length())];
             }
+            value.getChars(0, value.length(), text, 0);
+            textLength = value.length();
+            value(field);
+            textLength = 0;
+            filled(record, field);
         }
     }
 
     /**
-     * Ensure that the flat value added to the Avro Generic Container respect schema's type.
-     * @param type type of the flat field
-     * @param value value of the flat field
-     * @return typed object
-     * @throws SAXException unsupported / unimplemented type
+     * Convert the text of a flat element, resolving the branch of unions. Empty optional elements are null.
+     * @param node node of the flat element
      */
-    private Object ensureType(Schema.Type type, String value) throws SAXException {
+    private void value(SchemaNode node) throws SAXException {
+        SchemaNode[] branches = node.getBranches();
+        if (branches.length == 0) {
+            if (node.getNullBranch() != null && isBlank()) {
+                builder.value(node.getNullBranch(), null);
+            } else {
+                builder.value(node, node.getConverter().convert(text, 0, textLength));
+            }
+            return;
+        }
+        for (SchemaNode branch : branches) {
+            Object value;
+            try {
+                value = branch.getConverter().convert(text, 0, textLength);
+            } catch (SAXException e) {
+                continue;
+            }
+            builder.value(branch, value);
+            return;
+        }
+        throw new InvalidDocumentException("No branch of " + node.getSchema() + " matches value '" +
+                new String(text, 0, textLength) + "' of element " + node.getName());
+    }
 
-        switch(type) {
-            case BOOLEAN:
-                return "true".equals(value) || "1".equals(value);
-            case INT:
-                return Integer.parseInt(value);
-            case LONG:
-                return Long.parseLong(value);
-            case FLOAT:
-                return Float.parseFloat(value);
-            case DOUBLE:
-                return Double.parseDouble(value);
-            case STRING:
-                return value;
-            default:
-                throw new SAXException("Unsupported type " + type);
+    private boolean isBlank() {
+        for (int i = 0; i < textLength; i++) {
+            if (!ValueConverters.isWhitespace(text[i])) {
+                return false;
+            }
         }
+        return true;
     }
 
     /**
-     * For every new element, it adds an empty envelope (Record, Array, flat) to a stack.
-     * @param key fieldName
-     * @param currentSchema schema of the empty envelope
+     * @param parent record element
+     * @param uri namespace URI of the child element starting
+     * @param name local name of the child element
+     * @param qName qualified name of the child element
+     * @param attributes attributes of the child element
      */
-    private void generateAndStackEnvelope(String key, Schema currentSchema) throws SAXException {
+    private void startField(Element parent, String uri, String name, String qName, Attributes attributes)
+            throws SAXException {
+        // names and URIs are interned by the parser, comparisons only fall back to equals() when they are not
+        SchemaNode child = namespaceUri != null && !namespaceUri.equals(uri) ? null :
+                parent.getNode().child(name, parent.getLastPosition());
+        if (child == null) {
+            if (projection) {
+                skippedDepth = 1;
+                return;
+            }
+            throw new InvalidDocumentException("Unknown element " + qName);
+        }
+
+        if (parent.isArrayItem() && parent.isSet(child.getPosition()) && parent.getOpenArray() != child) {
+            // items of an array of records can be wrapped by a single element, a field coming again means the next
+            // item starts: <siblings><name>iona</name><name>liz</name></siblings>
+            nextItem(parent);
+        }
+        parent.setLastPosition(child.getPosition());
+        if (parent.getOpenArray() != null && parent.getOpenArray() != child) {
+            closeArray(parent);
+        }
 
-        switch (currentSchema.getType()) {
+        if (child.getType() == Schema.Type.ARRAY) {
+            // repeated elements of the same field go to the same array, until another field starts
+            if (parent.getOpenArray() != child) {
+                if (parent.isSet(child.getPosition())) {
+                    throw new InvalidDocumentException("Element " + qName + " repeated after another element, " +
+                            "the elements of an array must be adjacent");
+                }
+                builder.startArray(child);
+                parent.setOpenArray(child);
+            }
+            startValue(qName, child.getElement(), true, attributes);
+        } else {
+            startValue(qName, child, false, attributes);
+        }
+    }
+
+    /**
+     * Push the element of a value, in the state matching the type of its node.
+     * @param qName element starting
+     * @param node node of the value, a record field, an array item or a map value
+     * @param isArrayItem whether the value is an item of the array being built
+     * @param attributes attributes of the element
+     */
+    private void startValue(String qName, SchemaNode node, boolean isArrayItem, Attributes attributes)
+            throws SAXException {
+        switch (node.getType()) {
             case RECORD:
-                containers.add(new KeyValue(key, new GenericData.Record(currentSchema), currentSchema));
+                elements.add(new Element(qName, node, State.RECORD, isArrayItem));
+                builder.startRecord(node);
+                attributes(attributes);
                 break;
             case ARRAY:
-                containers.add(new KeyValue(key, new GenericData.Array<>(currentSchema, new ArrayList<>()), currentSchema));
-                containers.add(new KeyValue(key, new GenericData.Record(currentSchema.getElementType()), currentSchema.getElementType()));
-                isInArray = true;
+                elements.add(new Element(qName, node, State.ARRAY, isArrayItem));
+                builder.startArray(node);
+                break;
+            case MAP:
+                elements.add(new Element(qName, node, State.MAP, isArrayItem));
+                builder.startMap(node);
                 break;
             default:
-                KeyValue childKV =  containers.peekLast();
-                // Note for myself:
-                // avoid overwriting in arrays... but dirty...
-                // special treatment to single value records...
-                // The problem here is that we have to wait that the next element of the array is opened to close
-                // the previous element otherwise we cannot distinguished closing a field in a record and closing the
-                // record itself.
-                if (childKV.isSingleFieldRecord()
-                        && ((GenericRecord) childKV.getValue()).get(key) != null ) {
-                    endElement("", "", "");
-                    generateAndStackEnvelope(childKV.getKey(), childKV.getSchema());
-                }
-                containers.add(new KeyValue(key, currentSchema));
-
+                elements.add(new Element(qName, node, State.FLAT, isArrayItem));
                 break;
         }
     }
 
     /**
-     * Get child schema from parent schema.
-     *
-     * @param fieldName name of the field
-     * @param parentSchema Avro Schema of the parent
-     * @return Avro schema of child
-     * @throws SAXException unsupported / unimplemented type
+     * End the array item a record element holds and start the next one in the same element.
      */
-    private Schema getChildSchema(String fieldName, Schema parentSchema) throws SAXException {
-        switch (parentSchema.getType()) {
-            case RECORD:
-                return parentSchema.getField(fieldName).schema();
-            case ARRAY:
-                return parentSchema.getElementType();
-            default:
-                throw new SAXException();
+    private void nextItem(Element item) throws SAXException {
+        endRecord(item);
+        builder.startRecord(item.getNode());
+        item.clearSet();
+        item.setLastPosition(-1);
+    }
+
+    /**
+     * End a record element, array fields without any element are empty unless nullable or with a default value.
+     */
+    private void endRecord(Element record) throws SAXException {
+        if (record.getOpenArray() != null) {
+            closeArray(record);
         }
+        for (SchemaNode field : record.getNode().getFields()) {
+            if (field.getType() == Schema.Type.ARRAY && field.getUnionIndex() < 0 &&
+                    field.getEncodedDefault() == null && !record.isSet(field.getPosition())) {
+                builder.startArray(field);
+                builder.endArray(field);
+            }
+        }
+        builder.endRecord(record.getNode());
+    }
+
+    private void closeArray(Element parent) throws SAXException {
+        SchemaNode array = parent.getOpenArray();
+        builder.endArray(array);
+        parent.setOpenArray(null);
+        // whatever the record, the array is complete and another element of the field is rejected
+        parent.set(array.getPosition(), parent.getNode().getFields().length);
+        filled(parent, array);
     }
 
     /**
-     * Internal usage only :
-     * Wrapper of the elements that will be stacked. Containing the field name, the value, and the
-     * associated schema.
+     * Track the fields set in array items, to tell when the next item starts, and in the root record when stopping
+     * early, to stop the parse once every field is set.
+     * @param parent record the field belongs to
+     * @param field field whose value was just built
      */
-    private static class KeyValue {
-        private final String key;
-        private final Schema schema;
-        private Object value;
-        private final boolean isSingleFieldRecord;
+    private void filled(Element parent, SchemaNode field) throws SAXException {
+        if (field.getPosition() < 0 || !(parent.isArrayItem() || stopEarly)) {
+            return;
+        }
+        boolean complete = parent.set(field.getPosition(), parent.getNode().getFields().length);
+        if (!stopEarly || elements.size() != 1 || elements.peekLast() != parent) {
+            return;
+        }
+        if (complete && parent.getOpenArray() == null) {
+            // anything left in the document is either skipped or a repeated field
+            elements.clear();
+            builder.endRecord(root);
+            isComplete = true;
+            throw EarlyStop.INSTANCE;
+        }
+    }
 
+    /**
+     * Thrown to stop the parse once the record is complete, preallocated and without stack trace since it is
+     * expected on every document.
+     */
+    static final class EarlyStop extends SAXException {
+        static final EarlyStop INSTANCE = new EarlyStop();
+        private static final long serialVersionUID = 1L;
 
-        public KeyValue(String key, Object value, Schema schema) {
-            this.key = key;
-            this.value = value;
-            this.schema = schema;
-            this.isSingleFieldRecord = (schema.getType() == Schema.Type.RECORD) && (schema.getFields().size() == 1);
+        private EarlyStop() {
+            super("Record complete, parse stopped early");
         }
 
-        public KeyValue(String key, Schema schema) {
-            this.key = key;
-            this.value = null;
-            this.schema = schema;
-            isSingleFieldRecord = false;
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
         }
+    }
+
+    /**
+     * How the content of an element is handled.
+     */
+    private enum State {
+        /**
+         * Child elements are the fields of a record.
+         */
+        RECORD,
+        /**
+         * Text is the value.
+         */
+        FLAT,
+        /**
+         * Child elements are the items of an array.
+         */
+        ARRAY,
+        /**
+         * Child elements are the entries of a map, keyed by their name.
+         */
+        MAP,
+        /**
+         * Repeated element of an array of flat items turned out to hold the items, its child elements are items of
+         * the array of the enclosing record.
+         */
+        WRAPPER
+    }
+
+    /**
+     * Internal usage only :
+     * Element being parsed. Containing the element name, the associated schema node, how its content is handled
+     * and, for records, the array field currently receiving elements and the fields set.
+     */
+    private static class Element {
+        private final String key;
+        private final SchemaNode node;
+        private final boolean isArrayItem;
+        private State state;
+        private SchemaNode openArray;
+        private boolean[] set;
+        private int setCount;
+        private int lastPosition = -1;
 
-        public  boolean isSingleFieldRecord() {
-            return isSingleFieldRecord;
+        public Element(String key, SchemaNode node, State state, boolean isArrayItem) {
+            this.key = key;
+            this.node = node;
+            this.state = state;
+            this.isArrayItem = isArrayItem;
         }
 
         public String getKey() {
             return key;
         }
 
-        public Object getValue() {
-            return value;
+        public SchemaNode getNode() {
+            return node;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public void setState(State state) {
+            this.state = state;
+        }
+
+        public boolean isArrayItem() {
+            return isArrayItem;
+        }
+
+        /**
+         * @return position of the field of the last child element, -1 if none
+         */
+        public int getLastPosition() {
+            return lastPosition;
         }
 
-        public Schema getSchema() {
-            return schema;
+        public void setLastPosition(int lastPosition) {
+            this.lastPosition = lastPosition;
         }
 
-        public void setStringValue(String value) {
-            this.value = value;
+        public SchemaNode getOpenArray() {
+            return openArray;
+        }
+
+        public void setOpenArray(SchemaNode openArray) {
+            this.openArray = openArray;
+        }
+
+        /**
+         * @param position position of a field set
+         * @param fields number of fields of the record
+         * @return whether every field is set
+         */
+        public boolean set(int position, int fields) {
+            if (set == null) {
+                set = new boolean[fields];
+            }
+            if (!set[position]) {
+                set[position] = true;
+                setCount++;
+            }
+            return setCount == fields;
+        }
+
+        public boolean isSet(int position) {
+            return set != null && set[position];
+        }
+
+        public void clearSet() {
+            if (set != null) {
+                Arrays.fill(set, false);
+                setCount = 0;
+            }
         }
     }
 
@@ -0,0 +1,75 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.common.record.CompressionType;
+
+/**
+ * Compression of the bytes records hold, decompressed as a stream by the codecs of kafka-clients while the document
+ * is parsed. String values are never compressed.
+ */
+public enum InputCompression {
+    /**
+     * Bytes are the document.
+     */
+    NONE(CompressionType.NONE),
+    /**
+     * Codec detected from the magic bytes of each value, values without known magic bytes are not compressed.
+     */
+    DETECT(null),
+    GZIP(CompressionType.GZIP),
+    /**
+     * Snappy in the framing of snappy-java, as Kafka writes it.
+     */
+    SNAPPY(CompressionType.SNAPPY),
+    /**
+     * LZ4 frame format.
+     */
+    LZ4(CompressionType.LZ4),
+    ZSTD(CompressionType.ZSTD);
+
+    private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+    private static final byte[] SNAPPY_MAGIC = {(byte) 0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0};
+    private static final byte[] LZ4_MAGIC = {0x04, 0x22, 0x4d, 0x18};
+    private static final byte[] ZSTD_MAGIC = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd};
+
+    private final CompressionType type;
+
+    InputCompression(CompressionType type) {
+        this.type = type;
+    }
+
+    /**
+     * @param input value of a record
+     * @return codec of the value, {@link CompressionType#NONE} when it is not compressed
+     */
+    CompressionType of(byte[] input) {
+        if (type != null) {
+            return type;
+        }
+        // documents start with '<', white space or a byte order mark, none of which is a magic byte
+        if (startsWith(input, GZIP_MAGIC)) {
+            return CompressionType.GZIP;
+        }
+        if (startsWith(input, ZSTD_MAGIC)) {
+            return CompressionType.ZSTD;
+        }
+        if (startsWith(input, LZ4_MAGIC)) {
+            return CompressionType.LZ4;
+        }
+        if (startsWith(input, SNAPPY_MAGIC)) {
+            return CompressionType.SNAPPY;
+        }
+        return CompressionType.NONE;
+    }
+
+    private static boolean startsWith(byte[] input, byte[] magic) {
+        if (input.length < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (input[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
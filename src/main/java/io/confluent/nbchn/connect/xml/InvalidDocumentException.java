@@ -0,0 +1,23 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Document not matching the schema, thrown by the handler, the value builders and the value converters.
+ * Created without stack trace: the failure is located by the element path of the handler rather than by the code
+ * throwing it, and union branches are resolved by trying each converter in turn, one exception per branch that does
+ * not match.
+ */
+class InvalidDocumentException extends SAXException {
+
+    private static final long serialVersionUID = 1L;
+
+    InvalidDocumentException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,93 @@
+package io.confluent.nbchn.connect.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream over a file mapped in memory one chunk at a time, so that the parser reads the document from the
+ * page cache without copying it to the heap first, whatever its size. Only the current chunk is referenced, the
+ * previous ones are unmapped by the garbage collector once unreachable.
+ * Not thread-safe.
+ */
+class MappedFileInputStream extends InputStream {
+
+    static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    // offset of the current chunk in the file
+    private long chunkStart;
+    private MappedByteBuffer chunk;
+
+    /**
+     * @param path file to read
+     */
+    MappedFileInputStream(Path path) throws IOException {
+        this(path, CHUNK_SIZE);
+    }
+
+    /**
+     * @param path file to read
+     * @param chunkSize size of the mapped chunks, in bytes
+     */
+    MappedFileInputStream(Path path, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return size of the file when it was opened, in bytes
+     */
+    long size() {
+        return size;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return hasRemaining() ? chunk.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!hasRemaining()) {
+            return -1;
+        }
+        int read = Math.min(len, chunk.remaining());
+        chunk.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return chunk == null ? 0 : chunk.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        chunk = null;
+        channel.close();
+    }
+
+    // maps the next chunk once the current one is read
+    private boolean hasRemaining() throws IOException {
+        if (chunk != null && chunk.hasRemaining()) {
+            return true;
+        }
+        long next = chunk == null ? 0 : chunkStart + chunk.capacity();
+        if (next >= size) {
+            return false;
+        }
+        chunkStart = next;
+        chunk = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(chunkSize, size - next));
+        return true;
+    }
+}
@@ -0,0 +1,17 @@
+package io.confluent.nbchn.connect.xml;
+
+/**
+ * How elements are matched to the fields of the Avro schema. Prefixes are never part of the match, documents can
+ * bind the namespaces to any prefix.
+ */
+public enum NamespaceMatching {
+    /**
+     * Elements match the field of their local name whatever their namespace.
+     */
+    LOCAL_NAME,
+    /**
+     * Elements match the field of their local name only in the configured namespace, elements of other namespaces
+     * are unknown elements.
+     */
+    URI
+}
@@ -0,0 +1,19 @@
+package io.confluent.nbchn.connect.xml;
+
+/**
+ * Representation of the converted value.
+ */
+public enum OutputFormat {
+    /**
+     * Avro {@link org.apache.avro.generic.GenericRecord}, without Connect schema.
+     */
+    AVRO,
+    /**
+     * Kafka Connect {@link org.apache.kafka.connect.data.Struct} with the Connect schema derived from the Avro schema.
+     */
+    STRUCT,
+    /**
+     * Avro binary encoding of the record as bytes, written while parsing without building the record.
+     */
+    AVRO_BINARY
+}
@@ -0,0 +1,22 @@
+package io.confluent.nbchn.connect.xml;
+
+/**
+ * Parser reading the documents. Every backend feeds the same SAX events to the mapping filter, the stylesheet and
+ * the record handler, only the way the document is read differs.
+ */
+public enum ParserBackend {
+    /**
+     * JDK {@link javax.xml.parsers.SAXParser}, push parsing.
+     */
+    SAX,
+    /**
+     * StAX {@link javax.xml.stream.XMLStreamReader} pull parsing, events are pulled one at a time and the rest of
+     * the document is not read once the record is complete.
+     */
+    STAX,
+    /**
+     * Aalto non-blocking parser fed with chunks of the input bytes as it asks for them, falls back to {@link #STAX}
+     * for String inputs.
+     */
+    ASYNC
+}
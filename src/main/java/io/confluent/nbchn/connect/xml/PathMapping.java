@@ -0,0 +1,125 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Element to field mapping applied by {@link PathMappingFilter} while parsing, a streaming replacement for
+ * stylesheets that only rename and flatten elements.
+ * Paths are compiled into a tree of element names starting at the document root. An element reaches the handler
+ * under its mapped name, nested in its closest mapped ancestor, elements leading to a mapping are skipped but their
+ * mapped descendants are kept, anything else is dropped. Aliases rename elements wherever they appear, they only
+ * apply when no path is configured.
+ */
+final class PathMapping {
+
+    static final String SEPARATOR = "->";
+
+    private final Node root;
+    private final Map<String, String> aliases;
+
+    private PathMapping(Node root, Map<String, String> aliases) {
+        this.root = root;
+        this.aliases = aliases;
+    }
+
+    /**
+     * @param paths {@code /root/element->field} entries
+     * @param aliases {@code element->field} entries
+     * @return compiled mapping, null when nothing is configured
+     * @throws ConfigException invalid entry
+     */
+    static PathMapping of(List<String> paths, List<String> aliases) {
+        if (paths.isEmpty() && aliases.isEmpty()) {
+            return null;
+        }
+
+        Node root = paths.isEmpty() ? null : new Node();
+        for (String entry : paths) {
+            String[] mapping = split(FromXmlConfig.MAPPING_PATHS_CONFIG, entry);
+            if (!mapping[0].startsWith("/") || mapping[0].length() == 1) {
+                throw new ConfigException(FromXmlConfig.MAPPING_PATHS_CONFIG, entry,
+                        "Element path must be absolute, e.g. /catalog/cd/title");
+            }
+            Node node = root;
+            for (String name : mapping[0].substring(1).split("/")) {
+                if (name.isEmpty()) {
+                    throw new ConfigException(FromXmlConfig.MAPPING_PATHS_CONFIG, entry, "Empty element name");
+                }
+                node = node.children.computeIfAbsent(name, n -> new Node());
+            }
+            if (node.target != null) {
+                throw new ConfigException(FromXmlConfig.MAPPING_PATHS_CONFIG, entry, "Element path mapped twice");
+            }
+            node.target = mapping[1];
+        }
+
+        Map<String, String> aliasMap = new HashMap<>();
+        for (String entry : aliases) {
+            String[] alias = split(FromXmlConfig.MAPPING_ALIASES_CONFIG, entry);
+            if (aliasMap.put(alias[0], alias[1]) != null) {
+                throw new ConfigException(FromXmlConfig.MAPPING_ALIASES_CONFIG, entry, "Element aliased twice");
+            }
+        }
+        return new PathMapping(root, aliasMap);
+    }
+
+    /**
+     * @return whether elements are selected by path, otherwise every element is kept
+     */
+    boolean hasPaths() {
+        return root != null;
+    }
+
+    /**
+     * @return node above the document root element, null without path
+     */
+    Node root() {
+        return root;
+    }
+
+    /**
+     * @param name element name
+     * @return field name of the element
+     */
+    String alias(String name) {
+        String alias = aliases.get(name);
+        return alias != null ? alias : name;
+    }
+
+    private static String[] split(String config, String entry) {
+        int separator = entry.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new ConfigException(config, entry, "Expected <element>" + SEPARATOR + "<field>");
+        }
+        String from = entry.substring(0, separator).trim();
+        String to = entry.substring(separator + SEPARATOR.length()).trim();
+        if (from.isEmpty() || to.isEmpty()) {
+            throw new ConfigException(config, entry, "Expected <element>" + SEPARATOR + "<field>");
+        }
+        // field names reach the handler as element names, interned like the parser's
+        return new String[]{from, to.intern()};
+    }
+
+    /**
+     * Element of a mapped path, with the field it is mapped to if any.
+     */
+    static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private String target;
+
+        Node child(String name) {
+            return children.get(name);
+        }
+
+        /**
+         * @return field name, null when the element only leads to mapped descendants
+         */
+        String getTarget() {
+            return target;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import java.util.Arrays;
+
+/**
+ * SAX filter renaming and dropping elements according to a {@link PathMapping}, so that documents line up with
+ * the Avro schema in the same pass as the parse. The document root always goes through, the handler does not
+ * look at its name. Text is only forwarded inside kept elements. Renamed elements keep their namespace URI and
+ * prefix, only the local name changes. One filter per parser, not thread-safe.
+ */
+class PathMappingFilter extends XMLFilterImpl {
+
+    private final PathMapping mapping;
+
+    // per open input element: its node in the mapping, its output name, null when dropped, and its namespace URI
+    // and qualified name once renamed
+    private PathMapping.Node[] nodes = new PathMapping.Node[16];
+    private String[] names = new String[16];
+    private String[] uris = new String[16];
+    private String[] qNames = new String[16];
+    private int depth;
+
+    /**
+     * @param parent reader parsing the document
+     * @param mapping compiled mapping, can be shared between filters
+     */
+    PathMappingFilter(XMLReader parent, PathMapping mapping) {
+        super(parent);
+        this.mapping = mapping;
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        depth = 0;
+        super.startDocument();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        String name = localName.isEmpty() ? qName : localName;
+        PathMapping.Node node = null;
+        String output;
+        if (!mapping.hasPaths()) {
+            output = mapping.alias(name);
+        } else {
+            PathMapping.Node parent = depth == 0 ? mapping.root() : nodes[depth - 1];
+            node = parent == null ? null : parent.child(name);
+            if (node != null && node.getTarget() != null) {
+                output = node.getTarget();
+            } else {
+                output = depth == 0 ? mapping.alias(name) : null;
+            }
+        }
+
+        if (depth == nodes.length) {
+            nodes = Arrays.copyOf(nodes, depth * 2);
+            names = Arrays.copyOf(names, depth * 2);
+            uris = Arrays.copyOf(uris, depth * 2);
+            qNames = Arrays.copyOf(qNames, depth * 2);
+        }
+        nodes[depth] = node;
+        names[depth] = output;
+        if (output != null) {
+            uris[depth] = uri;
+            qNames[depth] = qualified(qName, name, output);
+            super.startElement(uri, output, qNames[depth], atts);
+        }
+        depth++;
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        String output = names[--depth];
+        nodes[depth] = null;
+        if (output != null) {
+            super.endElement(uris[depth], output, qNames[depth]);
+            uris[depth] = null;
+            qNames[depth] = null;
+        }
+    }
+
+    /**
+     * @param qName qualified name of the input element
+     * @param name local name of the input element
+     * @param output local name of the output element
+     * @return qualified name of the output element, with the prefix of the input element
+     */
+    private static String qualified(String qName, String name, String output) {
+        if (output.equals(name)) {
+            return qName;
+        }
+        int colon = qName.indexOf(':');
+        return colon < 0 ? output : qName.substring(0, colon + 1) + output;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (depth > 0 && names[depth - 1] != null) {
+            super.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        if (depth > 0 && names[depth - 1] != null) {
+            super.ignorableWhitespace(ch, start, length);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Content handler selecting the route of each document from its first start tag, then forwarding the document to
+ * the handler of the route, through the transformer of the route when it has a stylesheet. The start of the
+ * document and the prefix mappings of the root element are held until the route is known, so that the document is
+ * read once whatever its route.
+ * One router per converter, not thread-safe.
+ */
+class RoutingHandler extends DefaultHandler {
+
+    private final SchemaRoutes routes;
+    private final GenericRecordHandler[] handlers;
+    private final ContentHandler[] targets;
+    // prefix / URI pairs declared before the root element starts
+    private final List<String> prefixMappings = new ArrayList<>();
+    private Locator locator;
+    private SchemaRoutes.Route route;
+    private ContentHandler target;
+
+    /**
+     * @param routes dispatch table
+     * @param handlers handler of each route, by route index
+     * @param targets handler of each route or the transformer handler feeding it, by route index
+     */
+    RoutingHandler(SchemaRoutes routes, GenericRecordHandler[] handlers, ContentHandler[] targets) {
+        this.routes = routes;
+        this.handlers = handlers;
+        this.targets = targets;
+    }
+
+    /**
+     * @return handler of the route of the last document, null if no document started
+     */
+    GenericRecordHandler getHandler() {
+        return route == null ? null : handlers[route.getIndex()];
+    }
+
+    /**
+     * @return whether the last document was transformed by the stylesheet of its route
+     */
+    boolean isTransformed() {
+        return route != null && route.getTemplates() != null;
+    }
+
+    /**
+     * @param splitOutput receives the value of each split element of the next documents, whatever their route
+     */
+    void setSplitOutput(Consumer<Object> splitOutput) {
+        for (GenericRecordHandler handler : handlers) {
+            handler.setSplitOutput(splitOutput);
+        }
+    }
+
+    /**
+     * @param isTimed record the time the handlers receive the start of each document
+     */
+    void setTimed(boolean isTimed) {
+        for (GenericRecordHandler handler : handlers) {
+            handler.setTimed(isTimed);
+        }
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+    }
+
+    @Override
+    public void startDocument() {
+        route = null;
+        target = null;
+        prefixMappings.clear();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        if (target == null) {
+            prefixMappings.add(prefix);
+            prefixMappings.add(uri);
+        } else {
+            target.startPrefixMapping(prefix, uri);
+        }
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        if (target != null) {
+            target.endPrefixMapping(prefix);
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        if (target == null) {
+            select(uri, localName);
+        }
+        target.startElement(uri, localName, qName, attributes);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        target.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (target != null) {
+            target.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        if (target != null) {
+            target.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(String piTarget, String data) throws SAXException {
+        // instructions before the root element are dropped with the rest of the prolog
+        if (target != null) {
+            target.processingInstruction(piTarget, data);
+        }
+    }
+
+    @Override
+    public void skippedEntity(String name) throws SAXException {
+        if (target != null) {
+            target.skippedEntity(name);
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        if (target != null) {
+            target.endDocument();
+        }
+    }
+
+    private void select(String uri, String localName) throws SAXException {
+        route = routes.route(uri, localName);
+        if (route == null) {
+            throw new InvalidDocumentException("No route for root element " +
+                    (uri.isEmpty() ? localName : "{" + uri + "}" + localName));
+        }
+        target = targets[route.getIndex()];
+        if (locator != null) {
+            target.setDocumentLocator(locator);
+        }
+        target.startDocument();
+        for (int i = 0; i < prefixMappings.size(); i += 2) {
+            target.startPrefixMapping(prefixMappings.get(i), prefixMappings.get(i + 1));
+        }
+    }
+}
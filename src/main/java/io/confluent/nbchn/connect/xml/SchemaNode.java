@@ -0,0 +1,399 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.kafka.connect.data.Field;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Navigation plan of an Avro schema, compiled once and shared by every handler using the schema.
+ * A node is either the root, a field of a record, the element of an array or the value of a map. It caches what the
+ * handler needs on every SAX event: the position of the field in its parent record, the child nodes by element name
+ * and the converter of flat values, so that no schema lookup happens while parsing. When the output is a Connect
+ * {@link org.apache.kafka.connect.data.Struct}, the node also caches the translated Connect schema and field, for
+ * Avro binary the encoder of flat values.
+ * Optional fields, unions of null and one other type, are navigated as the other type: an absent element is null,
+ * and so is an empty flat element, through the null branch node of the field.
+ * Other unions must only have flat branches, each compiled into a branch node with its own converter, the text of
+ * the element goes to the first branch whose converter accepts it. The null branch accepts empty elements.
+ * When compiled with an attribute prefix, records also map the attributes of their element to their flat fields
+ * named after the attribute with the prefix, e.g. attribute id to field id or _id.
+ * Elements and attributes are also matched to fields by the aliases of the fields, such as the XML names of fields
+ * inferred from an XML schema whose names are not valid Avro names.
+ */
+final class SchemaNode {
+
+    private static final SchemaNode[] NO_BRANCHES = new SchemaNode[0];
+
+    private final String name;
+    private final Schema schema;
+    private final Schema.Type type;
+    private final int unionIndex;
+    private final int position;
+    private ValueConverter converter;
+    private final ValueEncoder encoder;
+    private final org.apache.kafka.connect.data.Schema connectSchema;
+    private Field connectField;
+    private Map<String, SchemaNode> children = Collections.emptyMap();
+    private Map<String, SchemaNode> attributes = Collections.emptyMap();
+    private SchemaNode[] fields = new SchemaNode[0];
+    private byte[] encodedDefault;
+    private SchemaNode element;
+    // size of the last array of this node, racy on purpose since it is only a capacity hint
+    private int sizeHint;
+    private SchemaNode[] branches = NO_BRANCHES;
+    private SchemaNode nullBranch;
+
+    /**
+     * @param schema schema of the node, the branch for union branches and optional fields
+     * @param unionIndex index of the branch in the union, -1 when the value is not in a union
+     */
+    private SchemaNode(String name, Schema schema, int unionIndex, org.apache.kafka.connect.data.Schema connectSchema,
+                       int position, OutputFormat format) {
+        // parsers intern element names, so do fields, matching is then mostly an identity comparison
+        this.name = name.intern();
+        this.connectSchema = connectSchema;
+        this.schema = schema;
+        this.unionIndex = unionIndex;
+        this.type = schema.getType();
+        this.position = position;
+        this.converter = ValueConverters.of(schema, format);
+        this.encoder = format == OutputFormat.AVRO_BINARY ? AvroBinaryValueBuilder.encoderOf(schema) : null;
+    }
+
+    /**
+     * Compile the navigation plan of a schema.
+     * @param schema Avro schema of the output
+     * @return root node
+     */
+    static SchemaNode compile(Schema schema) {
+        return compile(schema, OutputFormat.AVRO);
+    }
+
+    /**
+     * Compile the navigation plan of a schema for the given output.
+     * @param schema Avro schema of the output
+     * @param format output format, Connect schemas are only translated for {@link OutputFormat#STRUCT} and
+     *               default values only encoded for {@link OutputFormat#AVRO_BINARY}
+     * @return root node
+     */
+    static SchemaNode compile(Schema schema, OutputFormat format) {
+        return compile(schema, format, null);
+    }
+
+    /**
+     * Compile the navigation plan of a schema for the given output.
+     * @param schema Avro schema of the output
+     * @param format output format, Connect schemas are only translated for {@link OutputFormat#STRUCT} and
+     *               default values only encoded for {@link OutputFormat#AVRO_BINARY}
+     * @param attributePrefix prefix of the fields attributes are mapped to, null to ignore attributes
+     * @return root node
+     */
+    static SchemaNode compile(Schema schema, OutputFormat format, String attributePrefix) {
+        org.apache.kafka.connect.data.Schema connectSchema = format == OutputFormat.STRUCT ?
+                ConnectSchemas.toConnect(schema) :
+                null;
+        return compile(schema.getName(), schema, connectSchema, -1, format, attributePrefix, new IdentityHashMap<>());
+    }
+
+    private static SchemaNode compile(String name, Schema schema, org.apache.kafka.connect.data.Schema connectSchema,
+                                      int position, OutputFormat format, String attributePrefix,
+                                      Map<Schema, SchemaNode> records) {
+        Schema navigated = schema.getType() == Schema.Type.UNION ? onlyBranch(schema) : null;
+        SchemaNode node = navigated != null ?
+                new SchemaNode(name, navigated, schema.getTypes().indexOf(navigated), connectSchema, position, format) :
+                new SchemaNode(name, schema, -1, connectSchema, position, format);
+        if (navigated != null && isFlat(navigated.getType())) {
+            for (int i = 0; i < schema.getTypes().size(); i++) {
+                if (schema.getTypes().get(i).getType() == Schema.Type.NULL) {
+                    node.nullBranch = new SchemaNode(name, schema.getTypes().get(i), i, connectSchema, position,
+                            format);
+                }
+            }
+        }
+        switch (node.type) {
+            case RECORD:
+                // record fields are shared by every node of the same record schema, this also ends recursive schemas
+                // (which can only be compiled without Connect schema)
+                SchemaNode compiled = records.get(node.schema);
+                if (compiled != null) {
+                    node.children = compiled.children;
+                    node.attributes = compiled.attributes;
+                    node.fields = compiled.fields;
+                    break;
+                }
+                node.children = new HashMap<>();
+                node.attributes = attributePrefix == null ? Collections.emptyMap() : new HashMap<>();
+                node.fields = new SchemaNode[node.schema.getFields().size()];
+                records.put(node.schema, node);
+                for (Schema.Field field : node.schema.getFields()) {
+                    Field connectField = connectSchema == null ? null : connectSchema.fields().get(field.pos());
+                    SchemaNode child = compile(field.name(), field.schema(),
+                            connectField == null ? null : connectField.schema(), field.pos(), format,
+                            attributePrefix, records);
+                    child.connectField = connectField;
+                    for (SchemaNode branch : child.getBranches()) {
+                        branch.connectField = connectField;
+                    }
+                    if (child.nullBranch != null) {
+                        child.nullBranch.connectField = connectField;
+                    }
+                    if (format == OutputFormat.AVRO_BINARY && field.defaultVal() != null) {
+                        child.encodedDefault = encode(field.schema(), GenericData.get().getDefaultValue(field));
+                    } else if (format == OutputFormat.AVRO_BINARY && isNullable(field.schema())) {
+                        // absent from the document, the field is null as it is in the other formats
+                        child.encodedDefault = encode(field.schema(), null);
+                    }
+                    node.fields[field.pos()] = child;
+                    List<String> names = new ArrayList<>(field.aliases());
+                    names.add(0, field.name());
+                    for (String fieldName : names) {
+                        node.children.put(fieldName.intern(), child);
+                        if (attributePrefix != null && fieldName.startsWith(attributePrefix) &&
+                                (isFlat(child.type) || child.branches.length > 0)) {
+                            node.attributes.put(fieldName.substring(attributePrefix.length()), child);
+                        }
+                    }
+                }
+                break;
+            case ARRAY:
+                node.element = compile(name, node.schema.getElementType(),
+                        connectSchema == null ? null : connectSchema.valueSchema(), -1, format, attributePrefix,
+                        records);
+                break;
+            case MAP:
+                node.element = compile(name, node.schema.getValueType(),
+                        connectSchema == null ? null : connectSchema.valueSchema(), -1, format, attributePrefix,
+                        records);
+                break;
+            case UNION:
+                List<Schema> types = node.schema.getTypes();
+                node.branches = new SchemaNode[types.size()];
+                for (int i = 0; i < types.size(); i++) {
+                    Schema branch = types.get(i);
+                    if (!isFlat(branch.getType())) {
+                        throw new IllegalArgumentException("Unsupported union " + node.schema + ", records, arrays " +
+                                "and maps can only be in a union with null");
+                    }
+                    node.branches[i] = new SchemaNode(name, branch, i, connectSchema, position, format);
+                    if (connectSchema != null && branch.getType() != Schema.Type.NULL) {
+                        // Connect has no union, the value is set in the field of its branch of a union struct
+                        node.branches[i].converter = ConnectSchemas.unionConverter(connectSchema, branch,
+                                node.branches[i].converter);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return node;
+    }
+
+    /**
+     * @param union union schema
+     * @return the only branch which is not null, null if there are several
+     */
+    private static Schema onlyBranch(Schema union) {
+        Schema only = null;
+        for (Schema branch : union.getTypes()) {
+            if (branch.getType() != Schema.Type.NULL) {
+                if (only != null) {
+                    return null;
+                }
+                only = branch;
+            }
+        }
+        return only;
+    }
+
+    private static boolean isNullable(Schema schema) {
+        if (schema.getType() != Schema.Type.UNION) {
+            return schema.getType() == Schema.Type.NULL;
+        }
+        for (Schema branch : schema.getTypes()) {
+            if (branch.getType() == Schema.Type.NULL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isFlat(Schema.Type type) {
+        switch (type) {
+            case RECORD:
+            case ARRAY:
+            case MAP:
+            case UNION:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static byte[] encode(Schema schema, Object value) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+            new GenericDatumWriter<>(schema).write(value, encoder);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param elementName name of the child element
+     * @return node of the record field matching the element, null if there is none
+     */
+    SchemaNode child(String elementName) {
+        return children.get(elementName);
+    }
+
+    /**
+     * Look up the field of a child element, trying by identity the field matched last, repeated in arrays, and the
+     * one following it in the schema, the next element of documents written in schema order, before hashing.
+     * @param elementName name of the child element, interned by the parser
+     * @param last position of the field matched last in the element, -1 if none
+     * @return node of the record field matching the element, null if there is none
+     */
+    SchemaNode child(String elementName, int last) {
+        if (last >= 0 && fields[last].name == elementName) {
+            return fields[last];
+        }
+        if (last + 1 < fields.length && fields[last + 1].name == elementName) {
+            return fields[last + 1];
+        }
+        return children.get(elementName);
+    }
+
+    /**
+     * @param attributeName name of an attribute of the element
+     * @return node of the flat record field the attribute is mapped to, null if there is none
+     */
+    SchemaNode attribute(String attributeName) {
+        return attributes.get(attributeName);
+    }
+
+    /**
+     * @return whether attributes of the element can be mapped to fields of the record
+     */
+    boolean hasAttributes() {
+        return !attributes.isEmpty();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return schema of the node, the non null branch for optional fields and the branch for branch nodes
+     */
+    Schema getSchema() {
+        return schema;
+    }
+
+    Schema.Type getType() {
+        return type;
+    }
+
+    /**
+     * @return index of the branch in the field union, for optional fields and branch nodes, -1 otherwise
+     */
+    int getUnionIndex() {
+        return unionIndex;
+    }
+
+    /**
+     * @return position of the field in its parent record, -1 for the root and array elements
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * @return nodes of the record fields by position, empty if this node is not a record
+     */
+    SchemaNode[] getFields() {
+        return fields;
+    }
+
+    /**
+     * @return Avro binary encoding of the field default value, or of null for nullable fields without default, null
+     * if the field has neither or the plan was not compiled for {@link OutputFormat#AVRO_BINARY}
+     */
+    byte[] getEncodedDefault() {
+        return encodedDefault;
+    }
+
+    /**
+     * @return node of the array elements or of the map values, null if this node is neither an array nor a map
+     */
+    SchemaNode getElement() {
+        return element;
+    }
+
+    /**
+     * @return expected number of elements of the next array of this node
+     */
+    int getSizeHint() {
+        return sizeHint;
+    }
+
+    /**
+     * @param size number of elements of an array of this node just built
+     */
+    void setSizeHint(int size) {
+        this.sizeHint = size;
+    }
+
+    /**
+     * @return nodes of the union branches by index, empty unless the node is a union of flat types
+     */
+    SchemaNode[] getBranches() {
+        return branches;
+    }
+
+    /**
+     * @return node of the null branch of an optional flat field, which empty elements are converted to, null for
+     * any other node
+     */
+    SchemaNode getNullBranch() {
+        return nullBranch;
+    }
+
+    ValueConverter getConverter() {
+        return converter;
+    }
+
+    /**
+     * @return encoder of the flat value, null unless compiled for {@link OutputFormat#AVRO_BINARY}
+     */
+    ValueEncoder getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * @return Connect schema of the node, null unless compiled for {@link OutputFormat#STRUCT}
+     */
+    org.apache.kafka.connect.data.Schema getConnectSchema() {
+        return connectSchema;
+    }
+
+    /**
+     * @return Connect field of the node in its parent struct, null unless compiled for {@link OutputFormat#STRUCT}
+     */
+    Field getConnectField() {
+        return connectField;
+    }
+}
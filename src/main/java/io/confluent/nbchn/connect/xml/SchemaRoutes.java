@@ -0,0 +1,166 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.Schema;
+import org.apache.kafka.common.config.ConfigException;
+
+import javax.xml.transform.Templates;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatch table of the schemas and stylesheets by root element, compiled once at configure time and shared by every
+ * converter. Root elements are looked up by namespace URI then local name, the fallback route converts the documents
+ * whose root element has no route of its own.
+ * Without any route but the fallback, documents are not routed at all.
+ */
+final class SchemaRoutes {
+
+    private final OutputFormat format;
+    private final String attributePrefix;
+    private final Map<String, Map<String, Route>> byNamespace = new HashMap<>();
+    private final List<Route> routes = new ArrayList<>();
+    private Route fallback;
+
+    /**
+     * @param format output format the schemas are compiled for
+     * @param attributePrefix prefix of the fields attributes map to, null when attributes are ignored
+     */
+    SchemaRoutes(OutputFormat format, String attributePrefix) {
+        this.format = format;
+        this.attributePrefix = attributePrefix;
+    }
+
+    /**
+     * @param entry {@code <root element>-><avro schema path>[-><stylesheet path>]} entry of
+     *              {@value FromXmlConfig#ROUTES_CONFIG}
+     * @return root element, schema path and stylesheet path, the last one only when set
+     * @throws ConfigException invalid entry
+     */
+    static String[] split(String entry) {
+        String[] parts = entry.split(PathMapping.SEPARATOR, -1);
+        if (parts.length < 2 || parts.length > 3) {
+            throw new ConfigException(FromXmlConfig.ROUTES_CONFIG, entry, "Expected <root element>" +
+                    PathMapping.SEPARATOR + "<avro schema path>[" + PathMapping.SEPARATOR + "<stylesheet path>]");
+        }
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
+            if (parts[i].isEmpty()) {
+                throw new ConfigException(FromXmlConfig.ROUTES_CONFIG, entry, "Empty root element or path");
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * @param rootElement local name of the root element, prefixed by its namespace URI in braces when it has one,
+     *                    e.g. {@code {urn:orders}order}
+     * @param schema Avro schema of the documents of the root element
+     * @param templates compiled stylesheet, null when the documents are not transformed
+     * @throws ConfigException root element invalid or routed twice
+     */
+    void add(String rootElement, Schema schema, Templates templates) {
+        String namespace = "";
+        String localName = rootElement;
+        if (rootElement.startsWith("{")) {
+            int end = rootElement.indexOf('}');
+            if (end < 0 || end == rootElement.length() - 1) {
+                throw new ConfigException(FromXmlConfig.ROUTES_CONFIG, rootElement,
+                        "Expected {<namespace>}<local name>");
+            }
+            namespace = rootElement.substring(1, end);
+            localName = rootElement.substring(end + 1);
+        }
+        Route route = new Route(rootElement, compile(schema), templates, routes.size());
+        if (byNamespace.computeIfAbsent(namespace, n -> new HashMap<>()).putIfAbsent(localName, route) != null) {
+            throw new ConfigException(FromXmlConfig.ROUTES_CONFIG, rootElement, "Root element routed twice");
+        }
+        routes.add(route);
+    }
+
+    /**
+     * @param schema Avro schema of the documents without route
+     * @param templates compiled stylesheet, null when these documents are not transformed
+     */
+    void setFallback(Schema schema, Templates templates) {
+        this.fallback = new Route(null, compile(schema), templates, routes.size());
+        routes.add(fallback);
+    }
+
+    /**
+     * @param namespace namespace URI of the root element, empty when none
+     * @param localName local name of the root element
+     * @return route of the root element, the fallback route when it has none, null without fallback
+     */
+    Route route(String namespace, String localName) {
+        Map<String, Route> byName = byNamespace.get(namespace);
+        Route route = byName == null ? null : byName.get(localName);
+        return route != null ? route : fallback;
+    }
+
+    /**
+     * @return every route, the fallback included, indexed by {@link Route#getIndex()}
+     */
+    List<Route> getRoutes() {
+        return Collections.unmodifiableList(routes);
+    }
+
+    /**
+     * @return whether documents are routed, false when the fallback is the only route
+     */
+    boolean isRouted() {
+        return !byNamespace.isEmpty();
+    }
+
+    /**
+     * @return route of every document when they are not routed, null otherwise
+     */
+    Route getFallback() {
+        return fallback;
+    }
+
+    private SchemaNode compile(Schema schema) {
+        return SchemaNode.compile(schema, format, attributePrefix);
+    }
+
+    /**
+     * Compiled schema and stylesheet of a root element.
+     */
+    static final class Route {
+        private final String rootElement;
+        private final SchemaNode root;
+        private final Templates templates;
+        private final int index;
+
+        private Route(String rootElement, SchemaNode root, Templates templates, int index) {
+            this.rootElement = rootElement;
+            this.root = root;
+            this.templates = templates;
+            this.index = index;
+        }
+
+        /**
+         * @return root element as configured, null for the fallback route
+         */
+        String getRootElement() {
+            return rootElement;
+        }
+
+        SchemaNode getRoot() {
+            return root;
+        }
+
+        /**
+         * @return compiled stylesheet, null when the documents are not transformed
+         */
+        Templates getTemplates() {
+            return templates;
+        }
+
+        int getIndex() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.Schema;
+
+import javax.xml.transform.Templates;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM-wide cache of the immutable values compiled at configure time, shared by every transformation instance of a
+ * worker. Values are keyed by source location and content hash, so that an edited file is compiled again, and
+ * counted by reference: a value is loaded by its first user and dropped once its last user releases it.
+ * @param <V> type of the cached values, must be thread-safe
+ */
+final class SharedCache<V> {
+
+    static final SharedCache<Templates> TEMPLATES = new SharedCache<>();
+    static final SharedCache<Schema> SCHEMAS = new SharedCache<>();
+
+    private final Map<String, Entry<V>> entries = new HashMap<>();
+
+    /**
+     * Loads a value, possibly failing with a checked exception.
+     */
+    interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    /**
+     * @param location location of the source
+     * @param content content of the source
+     * @return cache key of the source
+     */
+    static String key(String location, byte[] content) {
+        return location + "#" + sha256(content);
+    }
+
+    /**
+     * @param parts content to hash, in order
+     * @return hexadecimal SHA-256 of the content
+     */
+    static String sha256(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                digest.update(part);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Take a reference on a value, loading it if no one holds it. Every successful call must be paired with a
+     * {@link #release(String)}.
+     * @param key cache key of the value
+     * @param loader loads the value when it is not cached, called once even when users acquire it concurrently
+     * @return cached value
+     */
+    <E extends Exception> V acquire(String key, Loader<V, E> loader) throws E {
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, k -> new Entry<>());
+            entry.references++;
+        }
+
+        boolean loaded = false;
+        try {
+            // concurrent users of the same key wait for the first load, other keys are not blocked
+            synchronized (entry) {
+                if (entry.value == null) {
+                    entry.value = loader.load();
+                }
+                loaded = true;
+                return entry.value;
+            }
+        } finally {
+            if (!loaded) {
+                release(key);
+            }
+        }
+    }
+
+    /**
+     * @param key cache key of a value previously acquired
+     */
+    void release(String key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && --entry.references == 0) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    /**
+     * @param key cache key
+     * @return whether a value is held for the key
+     */
+    boolean contains(String key) {
+        synchronized (entries) {
+            return entries.containsKey(key);
+        }
+    }
+
+    private static final class Entry<V> {
+        private int references;
+        private V value;
+    }
+}
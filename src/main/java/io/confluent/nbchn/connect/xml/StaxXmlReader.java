@@ -0,0 +1,231 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * SAX reader pulling its events from a StAX {@link XMLStreamReader}, so that pull parsers plug into the mapping
+ * filter, the stylesheet and the handler like the SAX parser. Reports namespace aware events without the namespace
+ * declarations as attributes, the only configuration the transformer and the handler ask for.
+ * One reader per converter, not thread-safe.
+ */
+class StaxXmlReader implements XMLReader {
+
+    static final String NAMESPACES_FEATURE = "http://xml.org/sax/features/namespaces";
+    static final String NAMESPACE_PREFIXES_FEATURE = "http://xml.org/sax/features/namespace-prefixes";
+
+    // factories are not all thread-safe, each reader has its own
+    private final XMLInputFactory factory;
+    private final AttributesImpl attributes = new AttributesImpl();
+    private ContentHandler contentHandler;
+    private ErrorHandler errorHandler;
+    private DTDHandler dtdHandler;
+    private EntityResolver entityResolver;
+
+    /**
+     * @param factory factory of the stream readers, used by this reader only
+     */
+    StaxXmlReader(XMLInputFactory factory) {
+        this.factory = factory;
+        this.factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        this.factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public void parse(InputSource input) throws IOException, SAXException {
+        XMLStreamReader reader;
+        try {
+            reader = open(input);
+        } catch (XMLStreamException e) {
+            throw parseException(e, input);
+        }
+        try {
+            emit(reader);
+        } catch (XMLStreamException e) {
+            throw parseException(e, input);
+        } finally {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // nothing left to read
+            }
+        }
+    }
+
+    @Override
+    public void parse(String systemId) throws IOException, SAXException {
+        parse(new InputSource(systemId));
+    }
+
+    /**
+     * @param input document, read from its characters, bytes or system id in that order
+     * @return reader positioned before the first event
+     */
+    protected XMLStreamReader open(InputSource input) throws XMLStreamException, IOException {
+        if (input.getCharacterStream() != null) {
+            return factory.createXMLStreamReader(input.getCharacterStream());
+        }
+        InputStream stream = input.getByteStream() != null ? input.getByteStream() :
+                new URL(input.getSystemId()).openStream();
+        return input.getEncoding() != null ?
+                factory.createXMLStreamReader(stream, input.getEncoding()) :
+                factory.createXMLStreamReader(stream);
+    }
+
+    /**
+     * @param reader reader returned by {@link #open(InputSource)}
+     * @return next event
+     */
+    protected int next(XMLStreamReader reader) throws XMLStreamException, IOException {
+        return reader.next();
+    }
+
+    // the handlers can stop the parse by throwing, the loop simply does not pull the rest of the document
+    private void emit(XMLStreamReader reader) throws XMLStreamException, IOException, SAXException {
+        ContentHandler handler = contentHandler;
+        handler.startDocument();
+        for (int event = next(reader); event != XMLStreamConstants.END_DOCUMENT; event = next(reader)) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                        handler.startPrefixMapping(nonNull(reader.getNamespacePrefix(i)),
+                                nonNull(reader.getNamespaceURI(i)));
+                    }
+                    attributes.clear();
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        String localName = reader.getAttributeLocalName(i);
+                        attributes.addAttribute(nonNull(reader.getAttributeNamespace(i)), localName,
+                                qName(reader.getAttributePrefix(i), localName), reader.getAttributeType(i),
+                                reader.getAttributeValue(i));
+                    }
+                    handler.startElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                            qName(reader.getPrefix(), reader.getLocalName()), attributes);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    handler.endElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(),
+                            qName(reader.getPrefix(), reader.getLocalName()));
+                    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                        handler.endPrefixMapping(nonNull(reader.getNamespacePrefix(i)));
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.SPACE:
+                    handler.ignorableWhitespace(reader.getTextCharacters(), reader.getTextStart(),
+                            reader.getTextLength());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    handler.processingInstruction(reader.getPITarget(), nonNull(reader.getPIData()));
+                    break;
+                default:
+                    // start of document, comments and DTD are not reported
+            }
+        }
+        handler.endDocument();
+    }
+
+    private static String qName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName;
+    }
+
+    private static String nonNull(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static SAXParseException parseException(XMLStreamException e, InputSource input) {
+        Location location = e.getLocation();
+        return location == null ?
+                new SAXParseException(e.getMessage(), input.getPublicId(), input.getSystemId(), -1, -1, e) :
+                new SAXParseException(e.getMessage(), location.getPublicId(), location.getSystemId(),
+                        location.getLineNumber(), location.getColumnNumber(), e);
+    }
+
+    @Override
+    public boolean getFeature(String name) throws SAXNotRecognizedException {
+        if (NAMESPACES_FEATURE.equals(name)) {
+            return true;
+        }
+        if (NAMESPACE_PREFIXES_FEATURE.equals(name)) {
+            return false;
+        }
+        throw new SAXNotRecognizedException(name);
+    }
+
+    @Override
+    public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (getFeature(name) != value) {
+            throw new SAXNotSupportedException(name);
+        }
+    }
+
+    @Override
+    public Object getProperty(String name) throws SAXNotRecognizedException {
+        throw new SAXNotRecognizedException(name);
+    }
+
+    @Override
+    public void setProperty(String name, Object value) throws SAXNotRecognizedException {
+        throw new SAXNotRecognizedException(name);
+    }
+
+    @Override
+    public void setEntityResolver(EntityResolver resolver) {
+        this.entityResolver = resolver;
+    }
+
+    @Override
+    public EntityResolver getEntityResolver() {
+        return entityResolver;
+    }
+
+    @Override
+    public void setDTDHandler(DTDHandler handler) {
+        this.dtdHandler = handler;
+    }
+
+    @Override
+    public DTDHandler getDTDHandler() {
+        return dtdHandler;
+    }
+
+    @Override
+    public void setContentHandler(ContentHandler handler) {
+        this.contentHandler = handler;
+    }
+
+    @Override
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    @Override
+    public void setErrorHandler(ErrorHandler handler) {
+        this.errorHandler = handler;
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+}
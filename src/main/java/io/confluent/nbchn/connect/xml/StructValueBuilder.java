@@ -0,0 +1,33 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.connect.data.Struct;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Build Kafka Connect {@link Struct}, using the Connect schemas and fields cached in the {@link SchemaNode} plan.
+ */
+final class StructValueBuilder extends ContainerValueBuilder {
+
+    @Override
+    protected Object newRecord(SchemaNode node) {
+        return new Struct(node.getConnectSchema());
+    }
+
+    @Override
+    protected void put(Object record, SchemaNode field, Object value) {
+        ((Struct) record).put(field.getConnectField(), value);
+    }
+
+    @Override
+    protected Object newArray(SchemaNode node, int capacity) {
+        return new ArrayList<>(capacity);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void add(Object array, Object value) {
+        ((List<Object>) array).add(value);
+    }
+}
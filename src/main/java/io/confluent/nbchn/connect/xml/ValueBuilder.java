@@ -0,0 +1,62 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Produce the output value from the events of {@link GenericRecordHandler}, so that the output representation is
+ * built directly while the document is parsed rather than converted after the fact.
+ * Events are nested like the document: a record, an array or a map ends before its parent does. The node of an
+ * event is a record field, an array item when the event belongs to an array, or a map value preceded by its
+ * {@link #key(String)} when it belongs to a map.
+ * Builders are stateful, each handler has its own.
+ */
+interface ValueBuilder {
+
+    /**
+     * Forget any partial value, called when a new document starts.
+     */
+    void reset();
+
+    void startRecord(SchemaNode node) throws SAXException;
+
+    void endRecord(SchemaNode node) throws SAXException;
+
+    void startArray(SchemaNode node) throws SAXException;
+
+    void endArray(SchemaNode node) throws SAXException;
+
+    void startMap(SchemaNode node) throws SAXException;
+
+    void endMap(SchemaNode node) throws SAXException;
+
+    /**
+     * @param key key of the next value of the open map
+     */
+    void key(String key) throws SAXException;
+
+    /**
+     * @param node flat field or array element
+     * @param value converted value
+     */
+    void value(SchemaNode node, Object value) throws SAXException;
+
+    /**
+     * @return the value built once the root record ended
+     */
+    Object getValue();
+
+    /**
+     * @param format output format
+     * @return new builder of the format
+     */
+    static ValueBuilder of(OutputFormat format) {
+        switch (format) {
+            case STRUCT:
+                return new StructValueBuilder();
+            case AVRO_BINARY:
+                return new AvroBinaryValueBuilder();
+            default:
+                return new AvroValueBuilder();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Convert the text of a flat element to the Java type expected by the Avro schema.
+ * Converters are resolved once per schema node (see {@link ValueConverters}) so that no type dispatch happens
+ * per value, and they read the text straight from the handler buffer.
+ */
+interface ValueConverter {
+
+    /**
+     * @param ch buffer holding the text of the element
+     * @param start start of the text in the buffer
+     * @param length length of the text
+     * @return typed object
+     * @throws SAXException invalid value or unsupported / unimplemented type
+     */
+    Object convert(char[] ch, int start, int length) throws SAXException;
+}
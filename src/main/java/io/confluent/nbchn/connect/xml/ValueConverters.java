@@ -0,0 +1,353 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.xml.sax.SAXException;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAccessor;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import static java.time.format.DateTimeFormatter.ISO_DATE;
+import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
+import static java.time.format.DateTimeFormatter.ISO_TIME;
+
+/**
+ * {@link ValueConverter} of the flat Avro types.
+ * Integers and booleans are parsed from the character range without creating a String, surrounding whitespace is
+ * ignored like XML schema does for these types. Strings are only created for STRING fields, and for floating point
+ * numbers whose correctly rounded parsing is left to the JDK.
+ * Enums, bytes, fixed and logical types are converted to the representation of the output format: the underlying
+ * Avro type for AVRO and AVRO_BINARY (enum ordinals for the latter), the Connect logical types for STRUCT.
+ * Bytes are read as base64, dates, times and timestamps as xs:date, xs:time and xs:dateTime, timestamps without
+ * offset being UTC.
+ */
+final class ValueConverters {
+
+    static final ValueConverter BOOLEAN = ValueConverters::parseBoolean;
+    static final ValueConverter INT = (ch, start, length) ->
+            (int) parseLong(ch, start, length, Integer.MIN_VALUE, Integer.MAX_VALUE, Schema.Type.INT);
+    static final ValueConverter LONG = (ch, start, length) ->
+            parseLong(ch, start, length, Long.MIN_VALUE, Long.MAX_VALUE, Schema.Type.LONG);
+    static final ValueConverter FLOAT = (ch, start, length) -> {
+        try {
+            return Float.parseFloat(new String(ch, start, length));
+        } catch (NumberFormatException e) {
+            throw invalid(Schema.Type.FLOAT, ch, start, length);
+        }
+    };
+    static final ValueConverter DOUBLE = (ch, start, length) -> {
+        try {
+            return Double.parseDouble(new String(ch, start, length));
+        } catch (NumberFormatException e) {
+            throw invalid(Schema.Type.DOUBLE, ch, start, length);
+        }
+    };
+    static final ValueConverter STRING = String::new;
+    static final ValueConverter NULL = (ch, start, length) -> {
+        if (!trim(ch, start, length).isEmpty()) {
+            throw invalid(Schema.Type.NULL, ch, start, length);
+        }
+        return null;
+    };
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final Conversions.DecimalConversion DECIMAL_CONVERSION = new Conversions.DecimalConversion();
+
+    private ValueConverters() {
+    }
+
+    /**
+     * @param type type of the flat field
+     * @return converter of the type, or a converter rejecting every value if the type is not a flat type
+     */
+    static ValueConverter of(Schema.Type type) {
+        switch (type) {
+            case BOOLEAN:
+                return BOOLEAN;
+            case INT:
+                return INT;
+            case LONG:
+                return LONG;
+            case FLOAT:
+                return FLOAT;
+            case DOUBLE:
+                return DOUBLE;
+            case STRING:
+                return STRING;
+            default:
+                return (ch, start, length) -> {
+                    throw new SAXException("Unsupported type " + type);
+                };
+        }
+    }
+
+    /**
+     * @param schema schema of a flat value or of a union branch
+     * @param format output format, the representation of enums, bytes and logical types depends on it
+     * @return converter of the schema, or a converter rejecting every value if the schema is not flat
+     */
+    static ValueConverter of(Schema schema, OutputFormat format) {
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType != null) {
+            ValueConverter converter = logical(schema, logicalType, format);
+            if (converter != null) {
+                return converter;
+            }
+        }
+        switch (schema.getType()) {
+            case ENUM:
+                return enumeration(schema, format);
+            case BYTES:
+                return (ch, start, length) -> {
+                    byte[] bytes = base64(ch, start, length, Schema.Type.BYTES);
+                    return format == OutputFormat.STRUCT ? bytes : ByteBuffer.wrap(bytes);
+                };
+            case FIXED:
+                return (ch, start, length) -> {
+                    byte[] bytes = base64(ch, start, length, Schema.Type.FIXED);
+                    if (bytes.length != schema.getFixedSize()) {
+                        throw invalid(schema.getFullName(), ch, start, length);
+                    }
+                    return format == OutputFormat.STRUCT ? bytes : new GenericData.Fixed(schema, bytes);
+                };
+            case NULL:
+                return NULL;
+            default:
+                return of(schema.getType());
+        }
+    }
+
+    /**
+     * @return converter of the logical type, null if the logical type is not supported and the underlying type
+     * applies
+     */
+    private static ValueConverter logical(Schema schema, LogicalType logicalType, OutputFormat format) {
+        boolean connect = format == OutputFormat.STRUCT;
+        String name = logicalType.getName();
+        switch (name) {
+            case "date":
+                return (ch, start, length) -> {
+                    long day = parse(ch, start, length, name, text -> LocalDate.parse(text, ISO_DATE).toEpochDay());
+                    return connect ? new Date(day * MILLIS_PER_DAY) : (Object) (int) day;
+                };
+            case "time-millis":
+                return (ch, start, length) -> {
+                    int millis = (int) (parse(ch, start, length, name, ValueConverters::nanoOfDay) / 1_000_000);
+                    return connect ? new Date(millis) : (Object) millis;
+                };
+            case "time-micros":
+                return (ch, start, length) -> parse(ch, start, length, name, ValueConverters::nanoOfDay) / 1_000;
+            case "timestamp-millis":
+                return (ch, start, length) -> {
+                    long millis = parse(ch, start, length, name, text -> parseInstant(text).toEpochMilli());
+                    return connect ? new Date(millis) : (Object) millis;
+                };
+            case "timestamp-micros":
+                return (ch, start, length) -> parse(ch, start, length, name, text -> {
+                    Instant instant = parseInstant(text);
+                    return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L),
+                            instant.getNano() / 1_000);
+                });
+            case "decimal":
+                return decimal(schema, (LogicalTypes.Decimal) logicalType, format);
+            default:
+                return null;
+        }
+    }
+
+    private static ValueConverter decimal(Schema schema, LogicalTypes.Decimal decimal, OutputFormat format) {
+        int scale = decimal.getScale();
+        int precision = decimal.getPrecision();
+        return (ch, start, length) -> {
+            BigDecimal value;
+            try {
+                // rejects values with more decimals than the scale rather than rounding them
+                value = new BigDecimal(trim(ch, start, length)).setScale(scale);
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw invalid(decimal.getName(), ch, start, length);
+            }
+            if (value.precision() > precision) {
+                throw invalid(decimal.getName(), ch, start, length);
+            }
+            if (format == OutputFormat.STRUCT) {
+                return value;
+            }
+            return schema.getType() == Schema.Type.FIXED ?
+                    DECIMAL_CONVERSION.toFixed(value, schema, decimal) :
+                    ByteBuffer.wrap(value.unscaledValue().toByteArray());
+        };
+    }
+
+    /**
+     * Symbols are looked up in a table of their preallocated representation.
+     */
+    private static ValueConverter enumeration(Schema schema, OutputFormat format) {
+        Map<String, Object> symbols = new HashMap<>();
+        for (String symbol : schema.getEnumSymbols()) {
+            switch (format) {
+                case STRUCT:
+                    symbols.put(symbol, symbol);
+                    break;
+                case AVRO_BINARY:
+                    symbols.put(symbol, schema.getEnumOrdinal(symbol));
+                    break;
+                default:
+                    symbols.put(symbol, new GenericData.EnumSymbol(schema, symbol));
+                    break;
+            }
+        }
+        return (ch, start, length) -> {
+            Object symbol = symbols.get(trim(ch, start, length));
+            if (symbol == null) {
+                throw invalid(schema.getFullName(), ch, start, length);
+            }
+            return symbol;
+        };
+    }
+
+    private static byte[] base64(char[] ch, int start, int length, Schema.Type type) throws SAXException {
+        try {
+            // the MIME decoder skips the line breaks of wrapped values
+            return Base64.getMimeDecoder().decode(trim(ch, start, length));
+        } catch (IllegalArgumentException e) {
+            throw invalid(type, ch, start, length);
+        }
+    }
+
+    private static long parse(char[] ch, int start, int length, String type, ToLongFunction<String> parser)
+            throws SAXException {
+        try {
+            return parser.applyAsLong(trim(ch, start, length));
+        } catch (DateTimeException | ArithmeticException e) {
+            throw invalid(type, ch, start, length);
+        }
+    }
+
+    private static long nanoOfDay(String text) {
+        // the offset of the time if any is ignored, Avro times are local
+        return ISO_TIME.parse(text, LocalTime::from).toNanoOfDay();
+    }
+
+    private static Instant parseInstant(String text) {
+        TemporalAccessor parsed = ISO_DATE_TIME.parseBest(text, ZonedDateTime::from, LocalDateTime::from);
+        return parsed instanceof ZonedDateTime ?
+                ((ZonedDateTime) parsed).toInstant() :
+                ((LocalDateTime) parsed).toInstant(ZoneOffset.UTC);
+    }
+
+    private static String trim(char[] ch, int start, int length) {
+        int end = start + length;
+        while (start < end && isWhitespace(ch[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(ch[end - 1])) {
+            end--;
+        }
+        return new String(ch, start, end - start);
+    }
+
+    /**
+     * The lexical values of xs:boolean: "true" and "1" are true, "false" and "0" are false, anything else is invalid
+     * so that the text of a union goes to the next branch.
+     */
+    static Boolean parseBoolean(char[] ch, int start, int length) throws SAXException {
+        int i = start;
+        int end = start + length;
+        while (i < end && isWhitespace(ch[i])) {
+            i++;
+        }
+        while (end > i && isWhitespace(ch[end - 1])) {
+            end--;
+        }
+        switch (end - i) {
+            case 1:
+                if (ch[i] == '1' || ch[i] == '0') {
+                    return ch[i] == '1';
+                }
+                break;
+            case 4:
+                if (ch[i] == 't' && ch[i + 1] == 'r' && ch[i + 2] == 'u' && ch[i + 3] == 'e') {
+                    return true;
+                }
+                break;
+            case 5:
+                if (ch[i] == 'f' && ch[i + 1] == 'a' && ch[i + 2] == 'l' && ch[i + 3] == 's' && ch[i + 4] == 'e') {
+                    return false;
+                }
+                break;
+            default:
+                break;
+        }
+        throw invalid(Schema.Type.BOOLEAN, ch, start, length);
+    }
+
+    /**
+     * Parse a decimal integer the way {@link Long#parseLong(String)} does, accumulating negatively so that the
+     * minimum value does not overflow.
+     */
+    static long parseLong(char[] ch, int start, int length, long min, long max, Schema.Type type) throws SAXException {
+        int end = start + length;
+        int i = start;
+        while (i < end && isWhitespace(ch[i])) {
+            i++;
+        }
+        while (end > i && isWhitespace(ch[end - 1])) {
+            end--;
+        }
+        if (i == end) {
+            throw invalid(type, ch, start, length);
+        }
+
+        boolean negative = false;
+        if (ch[i] == '-' || ch[i] == '+') {
+            negative = ch[i] == '-';
+            if (++i == end) {
+                throw invalid(type, ch, start, length);
+            }
+        }
+
+        long limit = negative ? min : -max;
+        long multiplyMin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = ch[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin) {
+                throw invalid(type, ch, start, length);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw invalid(type, ch, start, length);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+    }
+
+    static SAXException invalid(Schema.Type type, char[] ch, int start, int length) {
+        return invalid(type.name(), ch, start, length);
+    }
+
+    static SAXException invalid(String type, char[] ch, int start, int length) {
+        return new InvalidDocumentException("Invalid " + type + " value '" + new String(ch, start, length) + "'");
+    }
+}
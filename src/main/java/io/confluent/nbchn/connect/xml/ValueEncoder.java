@@ -0,0 +1,19 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.io.Encoder;
+
+import java.io.IOException;
+
+/**
+ * Write a converted flat value in Avro binary encoding.
+ * Encoders are resolved once per schema node (see {@link AvroBinaryValueBuilder#encoderOf}) like the
+ * {@link ValueConverter} producing the value, so that no type dispatch happens per value.
+ */
+interface ValueEncoder {
+
+    /**
+     * @param encoder encoder of the output
+     * @param value value returned by the converter of the node
+     */
+    void encode(Encoder encoder, Object value) throws IOException;
+}
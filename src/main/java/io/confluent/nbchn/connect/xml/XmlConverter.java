@@ -0,0 +1,189 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.common.record.BufferSupplier;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.RecordBatch;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Reader, optional transformer and handler used together to convert one document at a time. When documents are
+ * routed, the reader feeds a {@link RoutingHandler} holding a handler and optional transformer per route instead.
+ * None of them is thread-safe, instances are handed out by {@link XmlConverterPool}.
+ */
+class XmlConverter {
+
+    private final XMLReader reader;
+    private final Transformer transformer;
+    private final GenericRecordHandler handler;
+    private final RoutingHandler router;
+    private final FromXmlMetrics metrics;
+    // decompression buffers, kept from one document to the next
+    private final BufferSupplier buffers = BufferSupplier.create();
+
+    /**
+     * @param reader namespace aware SAX reader, possibly filtered
+     * @param transformer stylesheet transformer, null when the document is parsed as is
+     * @param handler handler building the output record
+     * @param metrics metrics the stage latencies are recorded to
+     */
+    XmlConverter(XMLReader reader, Transformer transformer, GenericRecordHandler handler, FromXmlMetrics metrics) {
+        this.reader = reader;
+        this.transformer = transformer;
+        this.handler = handler;
+        this.router = null;
+        this.metrics = metrics;
+        this.handler.setTimed(metrics.isEnabled());
+        if (transformer == null) {
+            // the transformer sets its own handler on the reader
+            this.reader.setContentHandler(handler);
+            this.reader.setErrorHandler(handler);
+        }
+    }
+
+    /**
+     * @param reader namespace aware SAX reader, possibly filtered
+     * @param router router of the documents to the handler of their root element
+     * @param metrics metrics the stage latencies are recorded to
+     */
+    XmlConverter(XMLReader reader, RoutingHandler router, FromXmlMetrics metrics) {
+        this.reader = reader;
+        this.transformer = null;
+        this.handler = null;
+        this.router = router;
+        this.metrics = metrics;
+        this.router.setTimed(metrics.isEnabled());
+        this.reader.setContentHandler(router);
+        this.reader.setErrorHandler(router);
+    }
+
+    /**
+     * @param input compressed document
+     * @param type codec of the document
+     * @return stream of the document, to close once parsed so that its buffers are reused by the next one
+     */
+    InputStream decompress(byte[] input, CompressionType type) {
+        return type.wrapForInput(ByteBuffer.wrap(input), RecordBatch.CURRENT_MAGIC_VALUE, buffers);
+    }
+
+    /**
+     * Parse the input in a single pass.
+     * @param input xml document
+     * @return converted record, in the representation of the handler's output format
+     */
+    Object convert(InputSource input) throws TransformerException, IOException, SAXException {
+        parse(input);
+        return handler().getValue();
+    }
+
+    /**
+     * Parse the input in a single pass, handing each split element to the output as soon as it ends.
+     * @param input xml document
+     * @param output receives the converted records, in the representation of the handler's output format
+     * @return number of converted records
+     */
+    int split(InputSource input, Consumer<Object> output) throws TransformerException, IOException, SAXException {
+        setSplitOutput(output);
+        try {
+            parse(input);
+        } finally {
+            setSplitOutput(null);
+        }
+        return handler().getSplitCount();
+    }
+
+    /**
+     * @return path of the element the last document failed at, in the document the handler receives, null when the
+     * document failed before its route was selected
+     */
+    String getErrorPath() {
+        GenericRecordHandler handler = handler();
+        return handler == null ? null : handler.getPath();
+    }
+
+    /**
+     * @return schema field the last document failed at, null if unknown
+     */
+    String getErrorField() {
+        GenericRecordHandler handler = handler();
+        return handler == null ? null : handler.getField();
+    }
+
+    // handler of the last document
+    private GenericRecordHandler handler() {
+        return router == null ? handler : router.getHandler();
+    }
+
+    private void setSplitOutput(Consumer<Object> output) {
+        if (router == null) {
+            handler.setSplitOutput(output);
+        } else {
+            router.setSplitOutput(output);
+        }
+    }
+
+    // the input is closed once parsed, before the converter goes back to the pool, so that decompression streams
+    // hand their buffers back while the converter is still held
+    private void parse(InputSource input) throws TransformerException, IOException, SAXException {
+        try {
+            parseOrTransform(input);
+        } finally {
+            if (input.getByteStream() != null) {
+                input.getByteStream().close();
+            }
+        }
+    }
+
+    // when a stylesheet is configured, the XSLT output is streamed to the handler as SAX events instead of being
+    // serialized and parsed again
+    private void parseOrTransform(InputSource input) throws TransformerException, IOException, SAXException {
+        long start = metrics.nanoTime();
+        if (transformer == null) {
+            try {
+                reader.parse(input);
+            } catch (SAXException e) {
+                // the record is complete, the rest of the document is not read
+                if (!isEarlyStop(e)) {
+                    throw e;
+                }
+            }
+            if (router != null && router.isTransformed()) {
+                // the stylesheet of the route runs once the document ends, like the configured one does
+                metrics.recordTransform(start, router.getHandler().getDocumentStart());
+            } else {
+                metrics.recordParse(start);
+            }
+        } else {
+            // the processor builds its source tree before emitting any output, the handler's start of document
+            // splits the parse from the transformation
+            try {
+                transformer.transform(new SAXSource(reader, input), new SAXResult(handler));
+            } catch (TransformerException e) {
+                if (!isEarlyStop(e)) {
+                    throw e;
+                }
+            }
+            metrics.recordTransform(start, handler.getDocumentStart());
+        }
+    }
+
+    // the transformer wraps the exceptions of its result handler
+    private static boolean isEarlyStop(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause == GenericRecordHandler.EarlyStop.INSTANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
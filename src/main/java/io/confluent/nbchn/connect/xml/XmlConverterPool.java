@@ -0,0 +1,150 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.connect.data.Struct;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of {@link XmlConverter}.
+ * The stylesheets are compiled once into {@link Templates}, the schemas into {@link SchemaNode} plans of the
+ * {@link SchemaRoutes} and the element mapping into a {@link PathMapping}, only the non thread-safe parser of the
+ * configured {@link ParserBackend}, mapping filter, transformers and handlers are created per converter. When every
+ * pooled converter is in use a new one is created, it is kept on release only if the pool is not full.
+ */
+class XmlConverterPool {
+
+    private final SchemaRoutes routes;
+    private final FromXmlConfig config;
+    private final org.apache.kafka.connect.data.Schema connectSchema;
+    private final SAXParserFactory parserFactory;
+    private final SAXTransformerFactory transformerFactory;
+    private final PathMapping mapping;
+    private final FromXmlMetrics metrics;
+    private final BlockingQueue<XmlConverter> idle;
+
+    /**
+     * @param routes compiled schemas and stylesheets, by root element when documents are routed
+     * @param mapping element mapping applied while parsing, null when elements are kept as is
+     * @param config split path, projection and pool size
+     * @param metrics metrics the converters record their stage latencies to
+     */
+    XmlConverterPool(SchemaRoutes routes, PathMapping mapping, FromXmlConfig config, FromXmlMetrics metrics) {
+        this.routes = routes;
+        this.config = config;
+        // the schema of structs depends on their route, they carry it
+        this.connectSchema = config.outputFormat == OutputFormat.AVRO_BINARY ?
+                org.apache.kafka.connect.data.Schema.BYTES_SCHEMA :
+                null;
+        this.transformerFactory = routes.isRouted() ?
+                (SAXTransformerFactory) TransformerFactory.newInstance() :
+                null;
+        this.parserFactory = config.parserBackend == ParserBackend.SAX ? SAXParserFactory.newInstance() : null;
+        if (this.parserFactory != null) {
+            // the XSLT processor expects namespace aware SAX events
+            this.parserFactory.setNamespaceAware(true);
+        }
+        this.mapping = mapping;
+        this.metrics = metrics;
+        // every batch thread holds a converter for its whole slice
+        this.idle = new ArrayBlockingQueue<>(Math.max(config.converterPoolSize, config.batchThreads));
+        // fail at configure time rather than on the first record
+        release(create());
+    }
+
+    /**
+     * @param value converted value
+     * @return Connect schema of the value, null for {@link OutputFormat#AVRO}
+     */
+    org.apache.kafka.connect.data.Schema connectSchema(Object value) {
+        return value instanceof Struct ? ((Struct) value).schema() : connectSchema;
+    }
+
+    XmlConverter borrow() {
+        XmlConverter converter = idle.poll();
+        return converter != null ? converter : create();
+    }
+
+    /**
+     * Give a converter back once its conversion succeeded. Converters that failed are simply not released
+     * so that no half processed state is reused.
+     * @param converter converter obtained from {@link #borrow()}
+     */
+    void release(XmlConverter converter) {
+        idle.offer(converter);
+    }
+
+    void clear() {
+        idle.clear();
+    }
+
+    // factories are not thread-safe
+    private synchronized XmlConverter create() {
+        try {
+            XMLReader reader = newReader();
+            if (mapping != null) {
+                reader = new PathMappingFilter(reader, mapping);
+            }
+            if (!routes.isRouted()) {
+                SchemaRoutes.Route route = routes.getFallback();
+                return new XmlConverter(
+                        reader,
+                        route.getTemplates() == null ? null : route.getTemplates().newTransformer(),
+                        newHandler(route.getRoot()),
+                        metrics
+                );
+            }
+
+            List<SchemaRoutes.Route> all = routes.getRoutes();
+            GenericRecordHandler[] handlers = new GenericRecordHandler[all.size()];
+            ContentHandler[] targets = new ContentHandler[all.size()];
+            for (SchemaRoutes.Route route : all) {
+                GenericRecordHandler handler = newHandler(route.getRoot());
+                handlers[route.getIndex()] = handler;
+                if (route.getTemplates() == null) {
+                    targets[route.getIndex()] = handler;
+                } else {
+                    // fed with the events of the document once its route is known
+                    TransformerHandler transformer = transformerFactory.newTransformerHandler(route.getTemplates());
+                    transformer.setResult(new SAXResult(handler));
+                    targets[route.getIndex()] = transformer;
+                }
+            }
+            return new XmlConverter(reader, new RoutingHandler(routes, handlers, targets), metrics);
+        } catch (ParserConfigurationException | SAXException | TransformerConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private GenericRecordHandler newHandler(SchemaNode root) {
+        GenericRecordHandler handler = new GenericRecordHandler(root, ValueBuilder.of(config.outputFormat),
+                config.splitPath);
+        handler.setProjection(config.projectionEnabled, config.projectionStopEarly);
+        handler.setNamespace(config.namespaceMatching == NamespaceMatching.URI ? config.namespaceUri : null);
+        return handler;
+    }
+
+    private XMLReader newReader() throws ParserConfigurationException, SAXException {
+        switch (config.parserBackend) {
+            case STAX:
+                return new StaxXmlReader(XMLInputFactory.newFactory());
+            case ASYNC:
+                return new AsyncXmlReader();
+            default:
+                return parserFactory.newSAXParser().getXMLReader();
+        }
+    }
+}
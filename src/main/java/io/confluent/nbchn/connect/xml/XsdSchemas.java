@@ -0,0 +1,455 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.JsonProperties;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Infer Avro schemas from XML schemas.
+ * The first global element of the XSD is the root record. Complex types become records, simple types their closest
+ * Avro primitive, elements with {@code maxOccurs} above 1 arrays, and elements with {@code minOccurs="0"}, nillable
+ * elements, choices and attributes optional fields. Complex types with simple content are reduced to their content.
+ * Decimals, dates, times and timestamps are logical types, decimals taking their precision and scale from the
+ * totalDigits and fractionDigits facets of their restriction.
+ * XML names that are not valid Avro names are sanitized, fields then keep the XML name as an alias, which is the
+ * name the elements are matched to.
+ * {@code xs:include} and {@code xs:import} are not followed.
+ * Inferred schemas are cached on disk as .avsc files keyed by XSD content hash, so that restarts do not infer them
+ * again. Within a JVM, they are shared through {@link SharedCache#SCHEMAS}.
+ */
+final class XsdSchemas {
+
+    private static final Logger log = LoggerFactory.getLogger(XsdSchemas.class);
+
+    // part of the cache key, to be bumped whenever the inference changes
+    private static final int VERSION = 2;
+    private static final String XS = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+    private static final Map<String, Schema.Type> BUILT_IN_TYPES = new HashMap<>();
+    // bounds of decimals without totalDigits or fractionDigits facet
+    private static final int DECIMAL_INTEGER_DIGITS = 28;
+    private static final int DECIMAL_SCALE = 10;
+
+    static {
+        for (String type : Arrays.asList("int", "short", "byte", "unsignedShort", "unsignedByte")) {
+            BUILT_IN_TYPES.put(type, Schema.Type.INT);
+        }
+        for (String type : Arrays.asList("long", "integer", "unsignedInt", "unsignedLong", "nonNegativeInteger",
+                "positiveInteger", "nonPositiveInteger", "negativeInteger")) {
+            BUILT_IN_TYPES.put(type, Schema.Type.LONG);
+        }
+        BUILT_IN_TYPES.put("boolean", Schema.Type.BOOLEAN);
+        BUILT_IN_TYPES.put("float", Schema.Type.FLOAT);
+        BUILT_IN_TYPES.put("double", Schema.Type.DOUBLE);
+    }
+
+    private XsdSchemas() {
+    }
+
+    /**
+     * @param content content of the XML schema
+     * @param namespace namespace of the inferred records
+     * @param cacheDirectory directory of the inferred schemas, null to always infer them
+     * @return Avro schema of the first global element
+     */
+    static Schema load(byte[] content, String namespace, Path cacheDirectory) {
+        String key = SharedCache.sha256(SharedCache.utf8(VERSION + ":" + namespace + ":"), content);
+        Schema schema = null;
+        Path cached = cacheDirectory == null ? null : cacheDirectory.resolve(key + ".avsc");
+        if (cached != null && Files.exists(cached)) {
+            try {
+                schema = new Schema.Parser().parse(cached.toFile());
+            } catch (SchemaParseException | IOException e) {
+                log.warn("Ignoring unreadable cached schema {}", cached, e);
+            }
+        }
+        if (schema == null) {
+            schema = infer(content, namespace);
+            if (cached != null) {
+                write(cached, schema);
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * @param xsd content of the XML schema
+     * @param namespace namespace of the inferred records
+     * @return Avro schema of the first global element
+     * @throws IllegalArgumentException invalid or unsupported XML schema
+     */
+    static Schema infer(byte[] xsd, String namespace) {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xsd));
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new IllegalArgumentException("Invalid XML schema", e);
+        }
+        return new Inference(document.getDocumentElement(), namespace).root();
+    }
+
+    // written aside then moved, concurrent workers sharing the directory never read a partial file
+    private static void write(Path cached, Schema schema) {
+        try {
+            Files.createDirectories(cached.getParent());
+            Path temporary = Files.createTempFile(cached.getParent(), cached.getFileName().toString(), ".tmp");
+            Files.write(temporary, schema.toString(true).getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temporary, cached, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, cached, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Could not cache schema in {}", cached, e);
+        }
+    }
+
+    /**
+     * Inference of one XML schema, walking its DOM from the root element declaration.
+     */
+    private static final class Inference {
+        private final String namespace;
+        private final List<Element> elements = new ArrayList<>();
+        private final Map<String, Element> globalElements = new HashMap<>();
+        private final Map<String, Element> complexTypes = new HashMap<>();
+        private final Map<String, Element> simpleTypes = new HashMap<>();
+        private final Map<String, Element> groups = new HashMap<>();
+        private final Map<String, Element> attributeGroups = new HashMap<>();
+        // records of named complex types, registered before their fields so that recursive types end
+        private final Map<String, Schema> records = new HashMap<>();
+        private final Set<String> recordNames = new HashSet<>();
+
+        Inference(Element schema, String namespace) {
+            this.namespace = namespace;
+            for (Element child : children(schema)) {
+                String name = child.getAttribute("name");
+                switch (child.getLocalName()) {
+                    case "element":
+                        elements.add(child);
+                        globalElements.put(name, child);
+                        break;
+                    case "complexType":
+                        complexTypes.put(name, child);
+                        break;
+                    case "simpleType":
+                        simpleTypes.put(name, child);
+                        break;
+                    case "group":
+                        groups.put(name, child);
+                        break;
+                    case "attributeGroup":
+                        attributeGroups.put(name, child);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        Schema root() {
+            if (elements.isEmpty()) {
+                throw new IllegalArgumentException("XML schema declares no global element");
+            }
+            Element root = elements.get(0);
+            Schema schema = elementType(root);
+            if (schema.getType() != Schema.Type.RECORD) {
+                throw new IllegalArgumentException("Root element " + root.getAttribute("name") + " is not complex");
+            }
+            return schema;
+        }
+
+        private Schema elementType(Element element) {
+            if (element.hasAttribute("ref")) {
+                return elementType(resolve(globalElements, element, element.getAttribute("ref")));
+            }
+            String name = element.getAttribute("name");
+            if (element.hasAttribute("type")) {
+                return namedType(element, element.getAttribute("type"), name);
+            }
+            for (Element child : children(element)) {
+                if ("complexType".equals(child.getLocalName())) {
+                    return complexType(child, name);
+                } else if ("simpleType".equals(child.getLocalName())) {
+                    return simpleType(child);
+                }
+            }
+            return Schema.create(Schema.Type.STRING);
+        }
+
+        private Schema namedType(Element context, String qName, String elementName) {
+            String localName = localName(qName);
+            if (XS.equals(context.lookupNamespaceURI(prefix(qName)))) {
+                return builtInType(localName, context);
+            }
+            if (complexTypes.containsKey(localName)) {
+                return complexType(complexTypes.get(localName), elementName);
+            }
+            return simpleType(resolve(simpleTypes, context, qName));
+        }
+
+        /**
+         * @param localName local name of the XML schema type
+         * @param context element referencing the type, a restriction holding the facets of a derived type
+         */
+        private Schema builtInType(String localName, Element context) {
+            switch (localName) {
+                case "decimal":
+                    int totalDigits = facet(context, "totalDigits");
+                    int fractionDigits = facet(context, "fractionDigits");
+                    // every value allowed by the facets fits: up to totalDigits integer digits, fractionDigits after
+                    int scale = fractionDigits >= 0 ? fractionDigits : totalDigits >= 0 ? totalDigits : DECIMAL_SCALE;
+                    int precision = (totalDigits >= 0 ? totalDigits : DECIMAL_INTEGER_DIGITS) + scale;
+                    return LogicalTypes.decimal(precision, scale).addToSchema(Schema.create(Schema.Type.BYTES));
+                case "date":
+                    return LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+                case "time":
+                    return LogicalTypes.timeMillis().addToSchema(Schema.create(Schema.Type.INT));
+                case "dateTime":
+                    return LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG));
+                default:
+                    Schema.Type type = BUILT_IN_TYPES.get(localName);
+                    return Schema.create(type != null ? type : Schema.Type.STRING);
+            }
+        }
+
+        /**
+         * @return value of the facet of a restriction, -1 if the element is not a restriction or has no such facet
+         */
+        private static int facet(Element restriction, String facet) {
+            if (!"restriction".equals(restriction.getLocalName())) {
+                return -1;
+            }
+            for (Element child : children(restriction)) {
+                if (facet.equals(child.getLocalName())) {
+                    return Integer.parseInt(child.getAttribute("value").trim());
+                }
+            }
+            return -1;
+        }
+
+        private Schema simpleType(Element simpleType) {
+            for (Element child : children(simpleType)) {
+                if ("restriction".equals(child.getLocalName())) {
+                    if (child.hasAttribute("base")) {
+                        return namedType(child, child.getAttribute("base"), null);
+                    }
+                    for (Element base : children(child)) {
+                        if ("simpleType".equals(base.getLocalName())) {
+                            return simpleType(base);
+                        }
+                    }
+                }
+            }
+            // lists and unions are kept as text
+            return Schema.create(Schema.Type.STRING);
+        }
+
+        private Schema complexType(Element complexType, String elementName) {
+            for (Element child : children(complexType)) {
+                if ("simpleContent".equals(child.getLocalName())) {
+                    for (Element derivation : children(child)) {
+                        if (derivation.hasAttribute("base")) {
+                            return namedType(derivation, derivation.getAttribute("base"), elementName);
+                        }
+                    }
+                    return Schema.create(Schema.Type.STRING);
+                }
+            }
+
+            String typeName = complexType.getAttribute("name");
+            if (!typeName.isEmpty() && records.containsKey(typeName)) {
+                return records.get(typeName);
+            }
+            Schema record = Schema.createRecord(recordName(typeName.isEmpty() ? elementName : typeName),
+                    null, namespace, false);
+            if (!typeName.isEmpty()) {
+                records.put(typeName, record);
+            }
+            Map<String, Schema.Field> fields = new LinkedHashMap<>();
+            content(complexType, fields, false, false);
+            record.setFields(new ArrayList<>(fields.values()));
+            return record;
+        }
+
+        /**
+         * @param parent complex type, group or derivation holding particles and attributes
+         * @param fields fields of the record, by name
+         * @param optional whether the particles may be absent
+         * @param repeated whether the particles may repeat
+         */
+        private void content(Element parent, Map<String, Schema.Field> fields, boolean optional, boolean repeated) {
+            for (Element child : children(parent)) {
+                switch (child.getLocalName()) {
+                    case "sequence":
+                    case "all":
+                        content(child, fields, optional || isOptional(child), repeated || isRepeated(child));
+                        break;
+                    case "choice":
+                        content(child, fields, true, repeated || isRepeated(child));
+                        break;
+                    case "group":
+                        content(resolve(groups, child, child.getAttribute("ref")), fields,
+                                optional || isOptional(child), repeated || isRepeated(child));
+                        break;
+                    case "complexContent":
+                        for (Element derivation : children(child)) {
+                            String base = derivation.getAttribute("base");
+                            if ("extension".equals(derivation.getLocalName()) &&
+                                    !XS.equals(derivation.lookupNamespaceURI(prefix(base)))) {
+                                content(resolve(complexTypes, derivation, base), fields, optional, repeated);
+                            }
+                            content(derivation, fields, optional, repeated);
+                        }
+                        break;
+                    case "element":
+                        String name = child.hasAttribute("ref") ?
+                                localName(child.getAttribute("ref")) :
+                                child.getAttribute("name");
+                        Schema type = elementType(child);
+                        if (repeated || isRepeated(child)) {
+                            add(fields, field(name, Schema.createArray(type), Collections.emptyList()));
+                        } else if (optional || isOptional(child) || "true".equals(child.getAttribute("nillable"))) {
+                            add(fields, optionalField(name, type));
+                        } else {
+                            add(fields, field(name, type, null));
+                        }
+                        break;
+                    case "attribute":
+                        add(fields, attribute(child));
+                        break;
+                    case "attributeGroup":
+                        content(resolve(attributeGroups, child, child.getAttribute("ref")), fields, optional,
+                                repeated);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        // attribute values are never required to build a record
+        private Schema.Field attribute(Element attribute) {
+            if (attribute.hasAttribute("ref")) {
+                return optionalField(localName(attribute.getAttribute("ref")), Schema.create(Schema.Type.STRING));
+            }
+            Schema type = Schema.create(Schema.Type.STRING);
+            if (attribute.hasAttribute("type")) {
+                type = namedType(attribute, attribute.getAttribute("type"), null);
+            } else {
+                for (Element child : children(attribute)) {
+                    if ("simpleType".equals(child.getLocalName())) {
+                        type = simpleType(child);
+                    }
+                }
+            }
+            return optionalField(attribute.getAttribute("name"), type);
+        }
+
+        private Schema.Field optionalField(String name, Schema type) {
+            Schema optional = Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.NULL), type));
+            return field(name, optional, JsonProperties.NULL_VALUE);
+        }
+
+        /**
+         * @param name XML name of the element or attribute
+         * @return field named after the XML name, sanitized and then aliased to the XML name when it is not a valid
+         * Avro name
+         */
+        private static Schema.Field field(String name, Schema type, Object defaultValue) {
+            String sanitized = sanitize(name);
+            Schema.Field field = new Schema.Field(sanitized, type, null, defaultValue);
+            if (!sanitized.equals(name)) {
+                field.addAlias(name);
+            }
+            return field;
+        }
+
+        private void add(Map<String, Schema.Field> fields, Schema.Field field) {
+            if (fields.put(field.name(), field) != null) {
+                throw new IllegalArgumentException("Field " + field.name() + " declared twice");
+            }
+        }
+
+        private String recordName(String name) {
+            String sanitized = sanitize(name);
+            String unique = sanitized;
+            for (int i = 2; !recordNames.add(unique); i++) {
+                unique = sanitized + i;
+            }
+            return unique;
+        }
+
+        private static String sanitize(String name) {
+            String sanitized = name.replaceAll("[^A-Za-z0-9_]", "_");
+            if (sanitized.isEmpty() || Character.isDigit(sanitized.charAt(0))) {
+                sanitized = "_" + sanitized;
+            }
+            return sanitized;
+        }
+
+        private Element resolve(Map<String, Element> declarations, Element context, String qName) {
+            Element declaration = declarations.get(localName(qName));
+            if (declaration == null) {
+                throw new IllegalArgumentException("Unknown declaration " + qName + " referenced by " +
+                        context.getLocalName() + ", xs:include and xs:import are not supported");
+            }
+            return declaration;
+        }
+
+        private static boolean isOptional(Element particle) {
+            return "0".equals(particle.getAttribute("minOccurs"));
+        }
+
+        private static boolean isRepeated(Element particle) {
+            String maxOccurs = particle.getAttribute("maxOccurs");
+            return "unbounded".equals(maxOccurs) || (!maxOccurs.isEmpty() && Integer.parseInt(maxOccurs) > 1);
+        }
+
+        private static String prefix(String qName) {
+            int colon = qName.indexOf(':');
+            return colon < 0 ? null : qName.substring(0, colon);
+        }
+
+        private static String localName(String qName) {
+            return qName.substring(qName.indexOf(':') + 1);
+        }
+
+        private static List<Element> children(Element parent) {
+            List<Element> children = new ArrayList<>();
+            for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE && XS.equals(child.getNamespaceURI())) {
+                    children.add((Element) child);
+                }
+            }
+            return children;
+        }
+    }
+}
@@ -0,0 +1,876 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.utils.ByteBufferOutputStream;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FromXmlTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Transformation<SourceRecord> transform;
+
+    @Before
+    public void before() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        this.transform = new FromXml.Value<>();
+        this.transform.configure(settings);
+    }
+
+    @After
+    public void after() {
+        this.transform.close();
+    }
+
+    @Test
+    public void convertString() {
+        String payload = "<FullName><first>nils</first><last>bouchardon</last></FullName>";
+        SourceRecord target = transform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload));
+
+        GenericRecord output = (GenericRecord) target.value();
+        assertEquals("nils", output.get("first"));
+        assertEquals("bouchardon", output.get("last"));
+    }
+
+    @Test
+    public void convertBytesHonoursDeclaredEncoding() {
+        String payload = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" +
+                "<FullName><first>amélie</first><last>poulain</last></FullName>";
+        byte[] input = payload.getBytes(StandardCharsets.ISO_8859_1);
+        SourceRecord target = transform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, input));
+
+        GenericRecord output = (GenericRecord) target.value();
+        assertEquals("amélie", output.get("first"));
+        assertEquals("poulain", output.get("last"));
+    }
+
+    @Test
+    public void convertConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<SourceRecord>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String payload = "<FullName><first>first" + i + "</first><last>last" + i + "</last></FullName>";
+                futures.add(executor.submit(() -> transform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                GenericRecord output = (GenericRecord) futures.get(i).get().value();
+                assertEquals("first" + i, output.get("first"));
+                assertEquals("last" + i, output.get("last"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void convertBatchInOrder() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("batch.threads", 4);
+        FromXml<SourceRecord> batchTransform = new FromXml.Value<>();
+        batchTransform.configure(settings);
+
+        List<SourceRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            String payload = "<FullName><first>first" + i + "</first><last>last" + i + "</last></FullName>";
+            batch.add(i % 2 == 0 ?
+                    buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload) :
+                    buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, payload.getBytes(StandardCharsets.UTF_8)));
+        }
+        List<SourceRecord> converted = batchTransform.apply(batch);
+        assertEquals(batch.size(), converted.size());
+        for (int i = 0; i < converted.size(); i++) {
+            GenericRecord output = (GenericRecord) converted.get(i).value();
+            assertEquals("first" + i, output.get("first"));
+            assertEquals("last" + i, output.get("last"));
+        }
+
+        batch.set(70, buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, "<FullName><middle/></FullName>"));
+        try {
+            batchTransform.apply(batch);
+            fail("batch with an invalid record converted");
+        } catch (DataException expected) {
+            // the whole batch fails
+        } finally {
+            batchTransform.close();
+        }
+    }
+
+    @Test
+    public void convertToStruct() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/nested_avro_with_array.avsc");
+        settings.put("output.format", "STRUCT");
+        Transformation<SourceRecord> structTransform = new FromXml.Value<>();
+        structTransform.configure(settings);
+
+        byte[] payload = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/nested_avro_with_array.xml"));
+        SourceRecord target = structTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, payload));
+        structTransform.close();
+
+        Schema siblingSchema = SchemaBuilder.struct().name("com.example.name")
+                .field("name", Schema.STRING_SCHEMA)
+                .build();
+        Schema personSchema = SchemaBuilder.struct().name("com.example.person")
+                .field("firstname", Schema.STRING_SCHEMA)
+                .field("lastname", Schema.STRING_SCHEMA)
+                .field("siblings", SchemaBuilder.array(siblingSchema).build())
+                .build();
+        Struct expected = new Struct(personSchema)
+                .put("firstname", "nils")
+                .put("lastname", "bouchardon")
+                .put("siblings", Arrays.asList(
+                        new Struct(siblingSchema).put("name", "iona"),
+                        new Struct(siblingSchema).put("name", "liz")));
+
+        assertEquals(personSchema, target.valueSchema());
+        assertEquals(expected, target.value());
+    }
+
+    @Test
+    public void convertToEveryFormat() throws Exception {
+        String payload = "<contact><name>nils</name><age>42</age><city>paris</city></contact>";
+        Map<OutputFormat, Object> values = new EnumMap<>(OutputFormat.class);
+        for (OutputFormat format : OutputFormat.values()) {
+            Map<String, Object> settings = new HashMap<>();
+            settings.put("schema.avro.path", "src/test/avro/contact.avsc");
+            settings.put("output.format", format.name());
+            Transformation<SourceRecord> formatTransform = new FromXml.Value<>();
+            formatTransform.configure(settings);
+            values.put(format, formatTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload))
+                    .value());
+            formatTransform.close();
+        }
+
+        // email and phone are absent and null, whatever the format
+        org.apache.avro.Schema schema = new org.apache.avro.Schema.Parser().parse(
+                new File("src/test/avro/contact.avsc"));
+        GenericRecord record = (GenericRecord) values.get(OutputFormat.AVRO);
+        GenericRecord decoded = new GenericDatumReader<GenericRecord>(schema).read(null,
+                DecoderFactory.get().binaryDecoder((byte[]) values.get(OutputFormat.AVRO_BINARY), null));
+        assertEquals(record, decoded);
+        Struct struct = (Struct) values.get(OutputFormat.STRUCT);
+        for (org.apache.avro.Schema.Field field : schema.getFields()) {
+            assertEquals(field.name(), record.get(field.name()), struct.get(field.name()));
+        }
+        assertEquals(null, record.get("email"));
+        assertEquals(null, record.get("phone"));
+        assertEquals(42, record.get("age"));
+    }
+
+    @Test
+    public void mapPathsLikeStylesheet() throws Exception {
+        Map<String, Object> xsltSettings = new HashMap<>();
+        xsltSettings.put("schema.avro.path", "src/test/avro/cd_catalog_transformed.avsc");
+        xsltSettings.put("xslt.transformer.path",
+                "file:src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_transformer.xsl");
+        Map<String, Object> mappingSettings = new HashMap<>();
+        mappingSettings.put("schema.avro.path", "src/test/avro/cd_catalog_transformed.avsc");
+        mappingSettings.put("mapping.paths",
+                "/catalog/cd->simplified_cd, /catalog/cd/title->title, /catalog/cd/artist->artist");
+
+        byte[] payload = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog.xml"));
+        Transformation<SourceRecord> xsltTransform = new FromXml.Value<>();
+        xsltTransform.configure(xsltSettings);
+        Transformation<SourceRecord> mappingTransform = new FromXml.Value<>();
+        mappingTransform.configure(mappingSettings);
+        Object expected = xsltTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, payload)).value();
+        Object actual = mappingTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, payload)).value();
+        xsltTransform.close();
+        mappingTransform.close();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void parseWithEveryBackend() throws Exception {
+        byte[] catalog = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog.xml"));
+        String latin = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" +
+                "<FullName><first>amélie</first><last>poulain</last></FullName>";
+
+        Map<String, Object> xsltSettings = new HashMap<>();
+        xsltSettings.put("schema.avro.path", "src/test/avro/cd_catalog_transformed.avsc");
+        xsltSettings.put("xslt.transformer.path",
+                "file:src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_transformer.xsl");
+        Map<String, Object> flatSettings = new HashMap<>();
+        flatSettings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+
+        Transformation<SourceRecord> saxTransform = new FromXml.Value<>();
+        saxTransform.configure(xsltSettings);
+        Object expected = saxTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, catalog)).value();
+        saxTransform.close();
+
+        for (ParserBackend backend : ParserBackend.values()) {
+            xsltSettings.put("parser.backend", backend.name());
+            Transformation<SourceRecord> xsltTransform = new FromXml.Value<>();
+            xsltTransform.configure(xsltSettings);
+            flatSettings.put("parser.backend", backend.name());
+            Transformation<SourceRecord> flatTransform = new FromXml.Value<>();
+            flatTransform.configure(flatSettings);
+
+            assertEquals(backend.name(), expected,
+                    xsltTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, catalog)).value());
+            GenericRecord fromBytes = (GenericRecord) flatTransform.apply(buildSourceRecord(
+                    Schema.OPTIONAL_BYTES_SCHEMA, latin.getBytes(StandardCharsets.ISO_8859_1))).value();
+            assertEquals(backend.name(), "amélie", fromBytes.get("first"));
+            GenericRecord fromUtf16 = (GenericRecord) flatTransform.apply(buildSourceRecord(
+                    Schema.OPTIONAL_BYTES_SCHEMA, latin.replace("ISO-8859-1", "UTF-16")
+                            .getBytes(StandardCharsets.UTF_16))).value();
+            assertEquals(backend.name(), "amélie", fromUtf16.get("first"));
+            GenericRecord fromWindows = (GenericRecord) flatTransform.apply(buildSourceRecord(
+                    Schema.OPTIONAL_BYTES_SCHEMA, latin.replace("ISO-8859-1", "windows-1252").replace("é", "€")
+                            .getBytes("windows-1252"))).value();
+            assertEquals(backend.name(), "am€lie", fromWindows.get("first"));
+            GenericRecord fromString = (GenericRecord) flatTransform.apply(buildSourceRecord(
+                    Schema.OPTIONAL_STRING_SCHEMA, "<FullName><first>nils</first><last>bouchardon</last></FullName>"))
+                    .value();
+            assertEquals(backend.name(), "bouchardon", fromString.get("last"));
+            try {
+                flatTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA,
+                        "<FullName><first>nils</last></FullName>".getBytes(StandardCharsets.UTF_8)));
+                fail(backend.name() + " converted a malformed document");
+            } catch (DataException expectedError) {
+                // reported like any parse error
+            }
+            xsltTransform.close();
+            flatTransform.close();
+        }
+    }
+
+    @Test
+    public void routeByRootElement() throws Exception {
+        byte[] catalog = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog.xml"));
+        Map<String, Object> xsltSettings = new HashMap<>();
+        xsltSettings.put("schema.avro.path", "src/test/avro/cd_catalog_transformed.avsc");
+        xsltSettings.put("xslt.transformer.path",
+                "file:src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_transformer.xsl");
+        Transformation<SourceRecord> xsltTransform = new FromXml.Value<>();
+        xsltTransform.configure(xsltSettings);
+        Object expected = xsltTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, catalog)).value();
+        xsltTransform.close();
+
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("routes", Arrays.asList(
+                "catalog->src/test/avro/cd_catalog_transformed.avsc->" +
+                        "file:src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_transformer.xsl",
+                "{urn:people}FullName->src/test/avro/flat_avro.avsc"));
+        for (ParserBackend backend : ParserBackend.values()) {
+            settings.put("parser.backend", backend.name());
+            Transformation<SourceRecord> routed = new FromXml.Value<>();
+            routed.configure(settings);
+
+            assertEquals(backend.name(), expected,
+                    routed.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, catalog)).value());
+            GenericRecord person = (GenericRecord) routed.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA,
+                    "<p:FullName xmlns:p=\"urn:people\"><first>nils</first><last>bouchardon</last></p:FullName>"))
+                    .value();
+            assertEquals(backend.name(), "bouchardon", person.get("last"));
+            try {
+                routed.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA,
+                        "<FullName><first>nils</first><last>bouchardon</last></FullName>"));
+                fail(backend.name() + " converted a document without route");
+            } catch (DataException expectedError) {
+                // FullName without namespace has no route and there is no fallback schema
+            }
+            routed.close();
+        }
+
+        // routes are selected after the mapping, which keeps the namespace of the root element
+        String renamed = "<p:Person xmlns:p=\"urn:people\"><p:names><first>nils</first><last>bouchardon</last>" +
+                "</p:names></p:Person>";
+        Map<String, Object> mappedSettings = new HashMap<>(settings);
+        mappedSettings.put("mapping.aliases", "Person->FullName");
+        mappedSettings.put("mapping.paths", "/Person/names/first->first, /Person/names/last->last");
+        Transformation<SourceRecord> mapped = new FromXml.Value<>();
+        mapped.configure(mappedSettings);
+        GenericRecord mappedPerson = (GenericRecord) mapped.apply(
+                buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, renamed)).value();
+        assertEquals("bouchardon", mappedPerson.get("last"));
+        mapped.close();
+
+        // documents without route fall back to the configured schema
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        Transformation<SourceRecord> withFallback = new FromXml.Value<>();
+        withFallback.configure(settings);
+        GenericRecord person = (GenericRecord) withFallback.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA,
+                "<FullName><first>nils</first><last>bouchardon</last></FullName>")).value();
+        assertEquals("nils", person.get("first"));
+        assertEquals(expected, withFallback.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, catalog)).value());
+        withFallback.close();
+    }
+
+    @Test
+    public void mapAttributesToFields() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/order.avsc");
+        settings.put("attributes.enabled", true);
+        settings.put("attributes.prefix", "attr_");
+        Transformation<SourceRecord> attributesTransform = new FromXml.Value<>();
+        attributesTransform.configure(settings);
+
+        String payload = "<order id=\"42\" xmlns:x=\"urn:x\" x:ignored=\"\"><customer>nils</customer>" +
+                "<line sku=\"A-1\" quantity=\"3\"/><line sku=\"B-2\"/></order>";
+        GenericRecord output = (GenericRecord)
+                attributesTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload)).value();
+        attributesTransform.close();
+
+        assertEquals(42L, output.get("attr_id"));
+        assertEquals("nils", output.get("customer"));
+        List<?> lines = (List<?>) output.get("line");
+        assertEquals("A-1", ((GenericRecord) lines.get(0)).get("attr_sku"));
+        assertEquals(3, ((GenericRecord) lines.get(0)).get("attr_quantity"));
+        assertEquals("B-2", ((GenericRecord) lines.get(1)).get("attr_sku"));
+        assertEquals(null, ((GenericRecord) lines.get(1)).get("attr_quantity"));
+    }
+
+    @Test
+    public void mapFlattenedPathsAndAliases() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro_transformed.avsc");
+        settings.put("mapping.paths", "/person/names/first->nickname");
+        Transformation<SourceRecord> pathTransform = new FromXml.Value<>();
+        pathTransform.configure(settings);
+        String nested = "<person><names><first>nils</first><last>bouchardon</last></names><age>7</age></person>";
+        GenericRecord flattened = (GenericRecord)
+                pathTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, nested)).value();
+        pathTransform.close();
+
+        settings.remove("mapping.paths");
+        settings.put("mapping.aliases", "first->nickname");
+        Transformation<SourceRecord> aliasTransform = new FromXml.Value<>();
+        aliasTransform.configure(settings);
+        GenericRecord renamed = (GenericRecord) aliasTransform.apply(
+                buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, "<person><first>nils</first></person>")).value();
+        aliasTransform.close();
+
+        assertEquals("nils", flattened.get("nickname"));
+        assertEquals("nils", renamed.get("nickname"));
+    }
+
+    @Test
+    public void splitDocument() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/cd.avsc");
+        settings.put("split.path", "/catalog/cd");
+        FromXml<SourceRecord> splitTransform = new FromXml.Value<>();
+        splitTransform.configure(settings);
+
+        byte[] payload = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog.xml"));
+        List<SourceRecord> records = new ArrayList<>();
+        int count = splitTransform.flatMap(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, payload), records::add);
+        // elements off the split path are skipped, whatever their content
+        String wrapped = "<catalog><header><cd><title>not a cd</title></cd></header>" +
+                "<cd><title>t</title><artist>a</artist><country>c</country><company>c</company>" +
+                "<price>1</price><year>2</year></cd></catalog>";
+        List<SourceRecord> wrappedRecords = new ArrayList<>();
+        splitTransform.flatMap(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, wrapped), wrappedRecords::add);
+        splitTransform.close();
+
+        assertEquals(3, count);
+        assertEquals(count, records.size());
+        GenericRecord first = (GenericRecord) records.get(0).value();
+        assertEquals("Empire Burlesque", first.get("title"));
+        assertEquals(10.90, first.get("price"));
+        assertEquals(1985, first.get("year"));
+        assertEquals("Bob Dylan", first.get("artist"));
+        assertEquals("Bonnie Tyler", ((GenericRecord) records.get(1).value()).get("artist"));
+        assertEquals(1, wrappedRecords.size());
+        assertEquals("t", ((GenericRecord) wrappedRecords.get(0).value()).get("title"));
+    }
+
+    @Test
+    public void matchNamespacedElements() {
+        String envelope = "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>" +
+                "<p:FullName xmlns:p=\"urn:people\" xmlns:x=\"urn:other\"><x:first>other</x:first>" +
+                "<p:first>nils</p:first><p:last>bouchardon</p:last></p:FullName>" +
+                "</soap:Body></soap:Envelope>";
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("split.path", "/Envelope/Body/FullName");
+        settings.put("projection.enabled", "true");
+
+        // prefixes are ignored, the element of the other namespace is the same field
+        FromXml<SourceRecord> localNames = new FromXml.Value<>();
+        localNames.configure(settings);
+        List<SourceRecord> records = new ArrayList<>();
+        localNames.flatMap(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, envelope), records::add);
+        localNames.close();
+        assertEquals(1, records.size());
+        assertEquals("bouchardon", ((GenericRecord) records.get(0).value()).get("last"));
+
+        settings.put("namespace.matching", "URI");
+        settings.put("namespace.uri", "urn:people");
+        for (ParserBackend backend : ParserBackend.values()) {
+            settings.put("parser.backend", backend.name());
+            FromXml<SourceRecord> uris = new FromXml.Value<>();
+            uris.configure(settings);
+            records.clear();
+            uris.flatMap(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, envelope), records::add);
+            uris.close();
+            assertEquals(backend.name(), 1, records.size());
+            assertEquals(backend.name(), "nils", ((GenericRecord) records.get(0).value()).get("first"));
+        }
+    }
+
+    @Test
+    public void matchNamespacedMappedElements() {
+        String person = "<p:person xmlns:p=\"urn:people\" xmlns:x=\"urn:other\"><p:names>" +
+                "<x:first>other</x:first><p:first>nils</p:first></p:names></p:person>";
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro_transformed.avsc");
+        settings.put("projection.enabled", "true");
+        settings.put("namespace.matching", "URI");
+        settings.put("namespace.uri", "urn:people");
+
+        // renamed elements keep their namespace, the element of the other namespace is still skipped
+        settings.put("mapping.paths", "/person/names/first->nickname");
+        for (ParserBackend backend : ParserBackend.values()) {
+            settings.put("parser.backend", backend.name());
+            Transformation<SourceRecord> pathTransform = new FromXml.Value<>();
+            pathTransform.configure(settings);
+            GenericRecord flattened = (GenericRecord)
+                    pathTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, person)).value();
+            pathTransform.close();
+            assertEquals(backend.name(), "nils", flattened.get("nickname"));
+        }
+
+        settings.remove("mapping.paths");
+        settings.remove("parser.backend");
+        settings.put("mapping.aliases", "first->nickname");
+        Transformation<SourceRecord> aliasTransform = new FromXml.Value<>();
+        aliasTransform.configure(settings);
+        GenericRecord renamed = (GenericRecord) aliasTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA,
+                "<p:person xmlns:p=\"urn:people\"><p:first>nils</p:first></p:person>")).value();
+        aliasTransform.close();
+        assertEquals("nils", renamed.get("nickname"));
+    }
+
+    @Test
+    public void convertReferencedFiles() throws Exception {
+        File baseDir = folder.newFolder("claims");
+        Path catalog = Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog.xml");
+        Files.copy(catalog, baseDir.toPath().resolve("catalog.xml"));
+        Files.write(folder.getRoot().toPath().resolve("outside.xml"),
+                "<catalog/>".getBytes(StandardCharsets.UTF_8));
+
+        // chunks are mapped one after the other, the stream reads across their boundaries
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        try (MappedFileInputStream in = new MappedFileInputStream(catalog, 7)) {
+            byte[] buffer = new byte[10];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                copy.write(buffer, 0, read);
+            }
+        }
+        assertTrue(Arrays.equals(Files.readAllBytes(catalog), copy.toByteArray()));
+
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/cd.avsc");
+        settings.put("split.path", "/catalog/cd");
+        settings.put("claim.check.enabled", "true");
+        settings.put("claim.check.base.dir", baseDir.getPath());
+        FromXml<SourceRecord> claims = new FromXml.Value<>();
+        claims.configure(settings);
+        List<SourceRecord> records = new ArrayList<>();
+        assertEquals(3, claims.flatMap(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, "catalog.xml"),
+                records::add));
+        assertEquals("Bonnie Tyler", ((GenericRecord) records.get(1).value()).get("artist"));
+        assertEquals(3, claims.flatMap(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA,
+                new File(baseDir, "catalog.xml").getAbsolutePath().getBytes(StandardCharsets.UTF_8)), r -> { }));
+        for (String reference : Arrays.asList("../outside.xml", "missing.xml", ".")) {
+            try {
+                claims.flatMap(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, reference), r -> { });
+                fail("converted " + reference);
+            } catch (DataException expected) {
+                // only regular files under the base directory are read
+            }
+        }
+        claims.close();
+    }
+
+    @Test
+    public void decompressBytes() throws Exception {
+        byte[] catalog = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog.xml"));
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/cd_catalog_transformed.avsc");
+        settings.put("xslt.transformer.path",
+                "file:src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_transformer.xsl");
+        Transformation<SourceRecord> plain = new FromXml.Value<>();
+        plain.configure(settings);
+        Object expected = plain.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, catalog)).value();
+        plain.close();
+
+        settings.put("input.compression", "DETECT");
+        Transformation<SourceRecord> detect = new FromXml.Value<>();
+        detect.configure(settings);
+        // values without magic bytes are parsed as is
+        assertEquals(expected, detect.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, catalog)).value());
+        for (CompressionType type : Arrays.asList(CompressionType.GZIP, CompressionType.SNAPPY, CompressionType.LZ4,
+                CompressionType.ZSTD)) {
+            byte[] compressed = compress(type, catalog);
+            // twice, the buffers of the first document are reused by the second
+            for (int i = 0; i < 2; i++) {
+                assertEquals(type.name, expected,
+                        detect.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, compressed)).value());
+            }
+
+            settings.put("input.compression", type.name());
+            Transformation<SourceRecord> configured = new FromXml.Value<>();
+            configured.configure(settings);
+            assertEquals(type.name, expected,
+                    configured.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, compressed)).value());
+            configured.close();
+        }
+        try {
+            detect.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA,
+                    Arrays.copyOf(compress(CompressionType.GZIP, catalog), 40)));
+            fail("converted a truncated document");
+        } catch (DataException expectedError) {
+            // reported like any parse error
+        }
+        detect.close();
+    }
+
+    private static byte[] compress(CompressionType type, byte[] input) throws Exception {
+        ByteBufferOutputStream buffer = new ByteBufferOutputStream(input.length);
+        try (OutputStream out = type.wrapForOutput(buffer, RecordBatch.CURRENT_MAGIC_VALUE)) {
+            out.write(input);
+        }
+        ByteBuffer compressed = buffer.buffer();
+        compressed.flip();
+        byte[] bytes = new byte[compressed.remaining()];
+        compressed.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void inferSchemaFromXsd() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.xml.path", "src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_schema.xsd");
+        settings.put("output.format", "STRUCT");
+        Transformation<SourceRecord> xsdTransform = new FromXml.Value<>();
+        xsdTransform.configure(settings);
+
+        byte[] payload = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog.xml"));
+        Struct catalog = (Struct) xsdTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA, payload)).value();
+        xsdTransform.close();
+
+        List<Struct> cds = catalog.getArray("cd");
+        assertEquals(3, cds.size());
+        assertEquals("Empire Burlesque", cds.get(0).getString("title"));
+        assertEquals("1985", cds.get(0).getString("year"));
+    }
+
+    @Test
+    public void reuseCachedConversion() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("cache.max.entries", 1);
+        Transformation<SourceRecord> cachedTransform = new FromXml.Value<>();
+        cachedTransform.configure(settings);
+
+        String heartbeat = "<FullName><first>nils</first><last>bouchardon</last></FullName>";
+        String other = "<FullName><first>iona</first><last>bouchardon</last></FullName>";
+        Object first = cachedTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA,
+                heartbeat.getBytes(StandardCharsets.UTF_8))).value();
+        Object second = cachedTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA,
+                heartbeat.getBytes(StandardCharsets.UTF_8))).value();
+        Object evicting = cachedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, other)).value();
+        Object third = cachedTransform.apply(buildSourceRecord(Schema.OPTIONAL_BYTES_SCHEMA,
+                heartbeat.getBytes(StandardCharsets.UTF_8))).value();
+        cachedTransform.close();
+
+        assertNotSame(first, second);
+        assertEquals(first, second);
+        assertEquals("iona", ((GenericRecord) evicting).get("first"));
+        assertNotSame(first, third);
+        assertEquals(first, third);
+    }
+
+    @Test
+    public void isolateCachedValues() {
+        String heartbeat = "<FullName><first>nils</first><last>bouchardon</last></FullName>";
+        for (OutputFormat format : OutputFormat.values()) {
+            Map<String, Object> settings = new HashMap<>();
+            settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+            settings.put("cache.max.entries", 1);
+            settings.put("output.format", format.name());
+            Transformation<SourceRecord> cachedTransform = new FromXml.Value<>();
+            cachedTransform.configure(settings);
+
+            Object converted = cachedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, heartbeat))
+                    .value();
+            Object expected = ConversionCache.copy(converted);
+            // modified downstream, both the converted value and a value from the cache
+            modify(converted);
+            modify(cachedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, heartbeat)).value());
+            Object cached = cachedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, heartbeat)).value();
+            cachedTransform.close();
+
+            if (format == OutputFormat.AVRO_BINARY) {
+                assertTrue(Arrays.equals((byte[]) expected, (byte[]) cached));
+            } else {
+                assertEquals(format.name(), expected, cached);
+            }
+        }
+    }
+
+    private static void modify(Object value) {
+        if (value instanceof byte[]) {
+            ((byte[]) value)[1]++;
+        } else if (value instanceof Struct) {
+            ((Struct) value).put("first", "modified");
+        } else {
+            ((GenericRecord) value).put("first", "modified");
+        }
+    }
+
+    @Test
+    public void skipElementsAbsentFromSchema() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("projection.enabled", true);
+        Transformation<SourceRecord> projectedTransform = new FromXml.Value<>();
+        projectedTransform.configure(settings);
+
+        String payload = "<FullName><blob><first>not the name</first><data>AAAA</data></blob>" +
+                "<first>nils</first><middle>x</middle><last>bouchardon</last></FullName>";
+        GenericRecord output = (GenericRecord)
+                projectedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload)).value();
+        projectedTransform.close();
+
+        assertEquals("nils", output.get("first"));
+        assertEquals("bouchardon", output.get("last"));
+    }
+
+    @Test
+    public void stopOnceRecordComplete() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("projection.enabled", true);
+        settings.put("projection.stop.early", true);
+        Transformation<SourceRecord> projectedTransform = new FromXml.Value<>();
+        projectedTransform.configure(settings);
+
+        // the malformed tail is never read
+        String payload = "<FullName><first>nils</first><last>bouchardon</last><blob></mismatch>";
+        GenericRecord output = (GenericRecord)
+                projectedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload)).value();
+        projectedTransform.close();
+
+        assertEquals("nils", output.get("first"));
+        assertEquals("bouchardon", output.get("last"));
+    }
+
+    @Test
+    public void registerMetrics() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("metrics.enabled", true);
+        settings.put("metrics.name", "metrics-test");
+        Transformation<SourceRecord> timedTransform = new FromXml.Value<>();
+        timedTransform.configure(settings);
+
+        String payload = "<FullName><first>nils</first><last>bouchardon</last></FullName>";
+        String invalidPayload = "<FullName><middle/></FullName>";
+        timedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, payload));
+        try {
+            timedTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, invalidPayload));
+            fail("unknown element converted");
+        } catch (DataException expected) {
+            // counted as an error
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metricsName("metrics-test");
+        assertEquals(1.0, (Double) server.getAttribute(name, "records-out-total"), 0.0);
+        assertEquals(1.0, (Double) server.getAttribute(name, "error-total"), 0.0);
+        assertEquals(payload.length() + invalidPayload.length(), (Double) server.getAttribute(name, "bytes-in-total"), 0.0);
+        assertTrue((Double) server.getAttribute(name, "parse-time-max") > 0.0);
+
+        timedTransform.close();
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void registerMetricsOfEveryInstance() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("metrics.enabled", true);
+        settings.put("metrics.name", "task-test");
+        // the tasks of a connector, configured alike
+        Transformation<SourceRecord> first = new FromXml.Value<>();
+        first.configure(settings);
+        Transformation<SourceRecord> second = new FromXml.Value<>();
+        second.configure(settings);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName(FromXmlMetrics.JMX_PREFIX + ":type=" + FromXmlMetrics.GROUP +
+                ",transform=task-test,side=value,*");
+        assertEquals(2, server.queryNames(pattern, null).size());
+        first.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA,
+                "<FullName><first>nils</first><last>bouchardon</last></FullName>"));
+        first.close();
+        ObjectName name = metricsName("task-test");
+        assertEquals(0.0, (Double) server.getAttribute(name, "records-out-total"), 0.0);
+        second.close();
+        assertTrue(server.queryNames(pattern, null).isEmpty());
+    }
+
+    @Test
+    public void resolveShortLatencies() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("metrics.enabled", true);
+        settings.put("metrics.name", "latency-test");
+        FromXmlMetrics metrics = FromXmlMetrics.create(new FromXmlConfig(settings), false);
+        for (int i = 0; i < 100; i++) {
+            long now = System.nanoTime();
+            metrics.recordParse(now - TimeUnit.MICROSECONDS.toNanos(500));
+            metrics.recordConversion(now - TimeUnit.MILLISECONDS.toNanos(5), 1);
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metricsName("latency-test");
+        double parseMedian = (Double) server.getAttribute(name, "parse-time-p50");
+        double conversionMedian = (Double) server.getAttribute(name, "conversion-time-p50");
+        metrics.close();
+
+        // sub-millisecond stages are told apart from slower ones
+        assertTrue("parse p50 " + parseMedian, parseMedian > 0.3 && parseMedian < 1.0);
+        assertTrue("conversion p50 " + conversionMedian, conversionMedian > 4.0 && conversionMedian < 6.0);
+    }
+
+    @Test
+    public void tolerateFailures() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", "src/test/avro/cd.avsc");
+        settings.put("split.path", "/catalog/cd");
+        settings.put("on.error", "PASS_THROUGH");
+        settings.put("metrics.enabled", true);
+        settings.put("metrics.name", "tolerance-test");
+        FromXml<SourceRecord> splitTransform = new FromXml.Value<>();
+        splitTransform.configure(settings);
+
+        String catalog = "<catalog><cd><title>t</title><artist>a</artist><country>c</country><company>c</company>" +
+                "<price>1</price><year>2</year></cd><cd><title>t</title><artist>a</artist><country>c</country>" +
+                "<company>c</company><price>1</price><year>MMII</year></cd></catalog>";
+        List<SourceRecord> records = new ArrayList<>();
+        int count = splitTransform.flatMap(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, catalog), records::add);
+
+        // the element preceding the failure, then the record unchanged
+        assertEquals(2, count);
+        assertEquals(count, records.size());
+        assertEquals(2, ((GenericRecord) records.get(0).value()).get("year"));
+        SourceRecord failed = records.get(1);
+        assertEquals(catalog, failed.value());
+        assertEquals("Invalid INT value 'MMII'", failed.headers().lastWithName("xml.error.reason").value());
+        assertEquals("/catalog/cd/year", failed.headers().lastWithName("xml.error.path").value());
+        assertEquals("year", failed.headers().lastWithName("xml.error.field").value());
+        assertEquals(0, records.get(0).headers().size());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metricsName("tolerance-test");
+        assertEquals(1.0, (Double) server.getAttribute(name, "error-total"), 0.0);
+        assertEquals(1.0, (Double) server.getAttribute(name, "error-tolerated-total"), 0.0);
+        splitTransform.close();
+
+        settings.clear();
+        settings.put("schema.avro.path", "src/test/avro/flat_avro.avsc");
+        settings.put("on.error", "NULL");
+        settings.put("on.error.header.prefix", "failure.");
+        FromXml<SourceRecord> nullTransform = new FromXml.Value<>();
+        nullTransform.configure(settings);
+        String valid = "<FullName><first>nils</first><last>bouchardon</last></FullName>";
+        SourceRecord invalid = buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA,
+                "<FullName><first>nils</first><middle/></FullName>");
+        List<SourceRecord> batch = nullTransform.apply(Arrays.asList(
+                buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, valid), invalid,
+                buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, valid)));
+        SourceRecord nulled = nullTransform.apply(invalid);
+        SourceRecord malformed = nullTransform.apply(buildSourceRecord(Schema.OPTIONAL_STRING_SCHEMA, "FullName"));
+        nullTransform.close();
+
+        // the batch goes on after the failure
+        assertEquals("bouchardon", ((GenericRecord) batch.get(2).value()).get("last"));
+        assertEquals(null, batch.get(1).value());
+        assertEquals(null, nulled.value());
+        assertEquals(null, nulled.valueSchema());
+        assertEquals("Unknown element middle", nulled.headers().lastWithName("failure.reason").value());
+        assertEquals("/FullName", nulled.headers().lastWithName("failure.path").value());
+        assertEquals(0, invalid.headers().size());
+        // failing before the root element, the reason is all there is to tell
+        assertEquals(null, malformed.value());
+        assertEquals(null, malformed.headers().lastWithName("failure.path"));
+        assertTrue(malformed.headers().lastWithName("failure.reason") != null);
+    }
+
+    /**
+     * @return JMX name of the value metrics of the only registered instance of the transform
+     */
+    private static ObjectName metricsName(String transform) throws Exception {
+        Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName(
+                FromXmlMetrics.JMX_PREFIX + ":type=" + FromXmlMetrics.GROUP + ",transform=" + transform +
+                        ",side=value,*"), null);
+        assertEquals(names.toString(), 1, names.size());
+        return names.iterator().next();
+    }
+
+    private static SourceRecord buildSourceRecord(Schema schema, Object payload) {
+        return new SourceRecord(Collections.emptyMap(), Collections.emptyMap(), "sample", schema, payload);
+    }
+
+}
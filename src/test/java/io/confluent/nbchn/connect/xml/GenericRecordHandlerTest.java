@@ -1,16 +1,31 @@
 package io.confluent.nbchn.connect.xml;
 
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.connect.data.Struct;
 import org.junit.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.AttributesImpl;
 import static org.junit.Assert.*;
 
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 public class GenericRecordHandlerTest {
 
@@ -62,6 +77,332 @@ public class GenericRecordHandlerTest {
         assertEquals(output, generateDataNestedAvroWithArrayData(schema));
     }
 
+    @Test
+    public void typedFieldsFromSplitText() throws Exception {
+
+        Schema schema = SchemaBuilder.record("Measure").fields()
+                .requiredString("name")
+                .requiredInt("count")
+                .requiredLong("timestamp")
+                .requiredBoolean("valid")
+                .requiredDouble("value")
+                .endRecord();
+
+        GenericRecordHandler handler = new GenericRecordHandler(schema);
+        handler.startDocument();
+        handler.startElement("", "measure", "measure", new AttributesImpl());
+        splitElement(handler, "name", "temper", "ature");
+        splitElement(handler, "count", "\n  -12", "3 ");
+        splitElement(handler, "timestamp", "15900000", "00000");
+        splitElement(handler, "valid", "tr", "ue");
+        splitElement(handler, "value", "21.", "5");
+        handler.endElement("", "measure", "measure");
+        handler.endDocument();
+
+        GenericRecord output = handler.getGenericRecord();
+        assertEquals("temperature", output.get("name"));
+        assertEquals(-123, output.get("count"));
+        assertEquals(1590000000000L, output.get("timestamp"));
+        assertEquals(true, output.get("valid"));
+        assertEquals(21.5, output.get("value"));
+    }
+
+    @Test
+    public void nestedAvroWithArrayToAvroBinary() throws Exception {
+
+        Schema schema = new Schema.Parser().parse(new File("src/test/avro/nested_avro_with_array.avsc"));
+
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        GenericRecordHandler handler = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.AVRO_BINARY), new AvroBinaryValueBuilder());
+        saxParser.parse("src/test/resources/io/confluent/nbchn/connect/xml/nested_avro_with_array.xml", handler);
+
+        assertEquals(generateDataNestedAvroWithArrayData(schema), decode(schema, (byte[]) handler.getValue()));
+    }
+
+    @Test
+    public void outOfOrderFieldsAndDefaultsToAvroBinary() throws Exception {
+
+        Schema address = SchemaBuilder.record("Address").fields()
+                .requiredString("street")
+                .requiredString("city")
+                .endRecord();
+        Schema schema = SchemaBuilder.record("Person").fields()
+                .requiredString("name")
+                .name("address").type(address).noDefault()
+                .name("age").type().intType().intDefault(42)
+                .requiredLong("id")
+                .endRecord();
+        String xml = "<person><id>7</id><address><city>paris</city><street>champs elysees</street></address>" +
+                "<name>nils</name></person>";
+
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        GenericRecordHandler handler = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.AVRO_BINARY), new AvroBinaryValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+
+        GenericRecord expected = new GenericRecordBuilder(schema)
+                .set("name", "nils")
+                .set("address", new GenericRecordBuilder(address)
+                        .set("street", "champs elysees")
+                        .set("city", "paris")
+                        .build())
+                .set("id", 7L)
+                .build();
+        assertEquals(expected, decode(schema, (byte[]) handler.getValue()));
+    }
+
+    @Test
+    public void unionsEnumsBytesAndLogicalTypes() throws Exception {
+
+        Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Trade\", \"fields\": [" +
+                "{\"name\": \"id\", \"type\": [\"null\", \"long\", \"string\"]}," +
+                "{\"name\": \"ref\", \"type\": [\"null\", \"long\", \"string\"]}," +
+                "{\"name\": \"note\", \"type\": [\"null\", \"long\", \"string\"]}," +
+                "{\"name\": \"side\", \"type\": {\"type\": \"enum\", \"name\": \"Side\", " +
+                "\"symbols\": [\"BUY\", \"SELL\"]}}," +
+                "{\"name\": \"day\", \"type\": {\"type\": \"int\", \"logicalType\": \"date\"}}," +
+                "{\"name\": \"at\", \"type\": [\"null\", {\"type\": \"long\", " +
+                "\"logicalType\": \"timestamp-millis\"}]}," +
+                "{\"name\": \"price\", \"type\": {\"type\": \"bytes\", \"logicalType\": \"decimal\", " +
+                "\"precision\": 8, \"scale\": 2}}," +
+                "{\"name\": \"signature\", \"type\": \"bytes\"}]}");
+        String xml = "<trade><id>42</id><ref>A-1</ref><note/><side>SELL</side><day>2020-01-31</day>" +
+                "<at>2020-01-31T13:20:00Z</at><price>99.5</price><signature>AQID</signature></trade>";
+
+        GenericRecord expected = new GenericRecordBuilder(schema)
+                .set("id", 42L)
+                .set("ref", "A-1")
+                .set("note", null)
+                .set("side", new GenericData.EnumSymbol(schema.getField("side").schema(), "SELL"))
+                .set("day", 18292)
+                .set("at", 1580476800000L)
+                .set("price", ByteBuffer.wrap(BigInteger.valueOf(9950).toByteArray()))
+                .set("signature", ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .build();
+
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        GenericRecordHandler handler = new GenericRecordHandler(schema);
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+        assertEquals(expected, handler.getGenericRecord());
+
+        handler = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.AVRO_BINARY), new AvroBinaryValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+        assertEquals(expected, decode(schema, (byte[]) handler.getValue()));
+
+        handler = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.STRUCT), new StructValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+        Struct struct = (Struct) handler.getValue();
+        struct.validate();
+        assertEquals(42L, struct.getStruct("id").get("long"));
+        assertNull(struct.getStruct("id").get("string"));
+        assertEquals("A-1", struct.getStruct("ref").get("string"));
+        assertNull(struct.get("note"));
+        assertEquals("SELL", struct.get("side"));
+        assertEquals(new Date(1580428800000L), struct.get("day"));
+        assertEquals(new Date(1580476800000L), struct.get("at"));
+        assertEquals(new BigDecimal("99.50"), struct.get("price"));
+        assertArrayEquals(new byte[]{1, 2, 3}, struct.getBytes("signature"));
+    }
+
+    @Test
+    public void attributesToAvroBinary() throws Exception {
+
+        Schema schema = SchemaBuilder.record("Person").fields()
+                .requiredString("name")
+                .requiredLong("id")
+                .name("age").type().optional().intType()
+                .endRecord();
+        String xml = "<person id=\"7\" unknown=\"x\"><name>nils</name></person>";
+
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        GenericRecordHandler handler = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.AVRO_BINARY, ""), new AvroBinaryValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+
+        GenericRecord expected = new GenericRecordBuilder(schema)
+                .set("name", "nils")
+                .set("id", 7L)
+                .build();
+        assertEquals(expected, decode(schema, (byte[]) handler.getValue()));
+    }
+
+    @Test
+    public void arraysOfPrimitivesNestedArraysAndMaps() throws Exception {
+
+        Schema schema = SchemaBuilder.record("Doc").fields()
+                .name("tags").type().array().items().stringType().noDefault()
+                .name("codes").type().array().items().intType().noDefault()
+                .name("matrix").type().array().items().array().items().intType().noDefault()
+                .name("labels").type().map().values().stringType().noDefault()
+                .requiredString("title")
+                .endRecord();
+        String xml = "<doc><tags>a</tags><tags>b</tags><codes><code>1</code><code>2</code></codes>" +
+                "<matrix><v>1</v><v>2</v></matrix><matrix><v>3</v></matrix>" +
+                "<labels><en>yes</en><fr>oui</fr></labels><title>t</title></doc>";
+
+        Map<String, String> labels = new HashMap<>();
+        labels.put("en", "yes");
+        labels.put("fr", "oui");
+        GenericRecord expected = new GenericRecordBuilder(schema)
+                .set("tags", Arrays.asList("a", "b"))
+                .set("codes", Arrays.asList(1, 2))
+                .set("matrix", Arrays.asList(Arrays.asList(1, 2), Collections.singletonList(3)))
+                .set("labels", labels)
+                .set("title", "t")
+                .build();
+
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        GenericRecordHandler handler = new GenericRecordHandler(schema);
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+        assertEquals(expected, handler.getGenericRecord());
+
+        handler = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.AVRO_BINARY), new AvroBinaryValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+        GenericRecord decoded = decode(schema, (byte[]) handler.getValue());
+        assertEquals("[a, b]", decoded.get("tags").toString());
+        assertEquals(expected.get("codes"), decoded.get("codes"));
+        assertEquals(expected.get("matrix"), decoded.get("matrix"));
+        Map<String, String> decodedLabels = new HashMap<>();
+        ((Map<?, ?>) decoded.get("labels")).forEach((k, v) -> decodedLabels.put(k.toString(), v.toString()));
+        assertEquals(labels, decodedLabels);
+        assertEquals("t", decoded.get("title").toString());
+
+        handler = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.STRUCT), new StructValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+        Struct struct = (Struct) handler.getValue();
+        struct.validate();
+        assertEquals(Arrays.asList("a", "b"), struct.getArray("tags"));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Collections.singletonList(3)), struct.getArray("matrix"));
+        assertEquals(labels, struct.getMap("labels"));
+    }
+
+    @Test
+    public void wrappedRecordItems() throws Exception {
+
+        Schema schema = new Schema.Parser().parse(new File("src/test/avro/nested_avro_with_array.avsc"));
+        String xml = "<person><firstname>nils</firstname><lastname>bouchardon</lastname>" +
+                "<siblings><name>iona</name></siblings><siblings><name>liz</name></siblings></person>";
+
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        GenericRecordHandler handler = new GenericRecordHandler(schema);
+        saxParser.parse(new InputSource(new StringReader(xml)), handler);
+        assertEquals(generateDataNestedAvroWithArrayData(schema), handler.getGenericRecord());
+
+        // the same handler, reused once arrays have sized their next allocation
+        saxParser.parse("src/test/resources/io/confluent/nbchn/connect/xml/nested_avro_with_array.xml", handler);
+        assertEquals(generateDataNestedAvroWithArrayData(schema), handler.getGenericRecord());
+    }
+
+    @Test
+    public void emptyOptionalElementsAreNull() throws Exception {
+
+        Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"Person\", \"fields\": [" +
+                "{\"name\": \"name\", \"type\": \"string\"}," +
+                "{\"name\": \"age\", \"type\": [\"null\", \"int\"]}," +
+                "{\"name\": \"score\", \"type\": [\"double\", \"null\"], \"default\": 0.5}]}");
+        String xml = "<person><name>nils</name><age/><score> </score></person>";
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+
+        GenericRecordHandler avro = new GenericRecordHandler(schema);
+        saxParser.parse(new InputSource(new StringReader(xml)), avro);
+        GenericRecord expected = new GenericRecordBuilder(schema)
+                .set("name", "nils")
+                .set("age", null)
+                .set("score", null)
+                .build();
+        assertEquals(expected, avro.getGenericRecord());
+
+        GenericRecordHandler binary = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.AVRO_BINARY), new AvroBinaryValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), binary);
+        assertEquals(expected, decode(schema, (byte[]) binary.getValue()));
+
+        GenericRecordHandler struct = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.STRUCT), new StructValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), struct);
+        Struct person = (Struct) struct.getValue();
+        assertEquals("nils", person.get("name"));
+        assertNull(person.get("age"));
+        assertNull(person.getWithoutDefault("score"));
+
+        // text other than whitespace is still converted
+        saxParser.parse(new InputSource(new StringReader("<person><name/><age> 7 </age></person>")), avro);
+        assertEquals(7, avro.getGenericRecord().get("age"));
+        assertEquals("", avro.getGenericRecord().get("name").toString());
+    }
+
+    @Test
+    public void arrayElementsAfterAnotherElement() throws Exception {
+
+        Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"R\", \"fields\": [" +
+                "{\"name\": \"t\", \"type\": {\"type\": \"array\", \"items\": \"string\"}}," +
+                "{\"name\": \"a\", \"type\": \"string\"}]}");
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+        GenericRecordHandler handler = new GenericRecordHandler(schema);
+
+        saxParser.parse(new InputSource(new StringReader("<R><t>1</t><t>2</t><a>x</a></R>")), handler);
+        assertEquals(Arrays.asList("1", "2"), handler.getGenericRecord().get("t"));
+
+        try {
+            saxParser.parse(new InputSource(new StringReader("<R><t>1</t><a>x</a><t>2</t></R>")), handler);
+            fail("array split by another element converted");
+        } catch (InvalidDocumentException expected) {
+            assertTrue(expected.getMessage().contains("t repeated"));
+        }
+    }
+
+    @Test
+    public void absentArraysAreEmpty() throws Exception {
+
+        Schema schema = new Schema.Parser().parse("{\"type\": \"record\", \"name\": \"R\", \"fields\": [" +
+                "{\"name\": \"t\", \"type\": {\"type\": \"array\", \"items\": \"string\"}}," +
+                "{\"name\": \"o\", \"type\": [\"null\", {\"type\": \"array\", \"items\": \"string\"}], " +
+                "\"default\": null}," +
+                "{\"name\": \"a\", \"type\": \"string\"}]}");
+        String xml = "<R><a>x</a></R>";
+        SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+
+        GenericRecordHandler avro = new GenericRecordHandler(schema);
+        saxParser.parse(new InputSource(new StringReader(xml)), avro);
+        GenericRecord expected = new GenericRecordBuilder(schema)
+                .set("t", Collections.emptyList())
+                .set("o", null)
+                .set("a", "x")
+                .build();
+        assertEquals(expected, avro.getGenericRecord());
+
+        GenericRecordHandler binary = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.AVRO_BINARY), new AvroBinaryValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), binary);
+        assertEquals(expected, decode(schema, (byte[]) binary.getValue()));
+
+        GenericRecordHandler struct = new GenericRecordHandler(
+                SchemaNode.compile(schema, OutputFormat.STRUCT), new StructValueBuilder());
+        saxParser.parse(new InputSource(new StringReader(xml)), struct);
+        Struct record = (Struct) struct.getValue();
+        record.validate();
+        assertEquals(Collections.emptyList(), record.get("t"));
+        assertNull(record.get("o"));
+    }
+
+    private static GenericRecord decode(Schema schema, byte[] bytes) throws Exception {
+        GenericDatumReader<GenericRecord> reader = new GenericDatumReader<>(schema);
+        return reader.read(null, DecoderFactory.get().binaryDecoder(bytes, null));
+    }
+
+    private static void splitElement(GenericRecordHandler handler, String name, String... chunks) throws Exception {
+        handler.startElement("", name, name, new AttributesImpl());
+        for (String chunk : chunks) {
+            handler.characters(chunk.toCharArray(), 0, chunk.length());
+        }
+        handler.endElement("", name, name);
+    }
+
     public GenericRecord generateDataFlatAvroData(Schema schema) {
         GenericRecordBuilder builder = new GenericRecordBuilder(schema);
         builder.set("first", "nils");
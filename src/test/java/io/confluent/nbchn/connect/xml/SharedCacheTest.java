@@ -0,0 +1,76 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SharedCacheTest {
+
+    @Test
+    public void shareUntilLastRelease() {
+        SharedCache<Object> cache = new SharedCache<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        Object first = cache.acquire("key", () -> new Object[]{loads.incrementAndGet()});
+        Object second = cache.acquire("key", () -> new Object[]{loads.incrementAndGet()});
+        cache.release("key");
+        assertTrue(cache.contains("key"));
+        cache.release("key");
+        assertFalse(cache.contains("key"));
+        cache.acquire("key", () -> new Object[]{loads.incrementAndGet()});
+
+        assertSame(first, second);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void failedLoadIsNotCached() {
+        SharedCache<String> cache = new SharedCache<>();
+        try {
+            cache.acquire("key", () -> {
+                throw new IOException("unreadable");
+            });
+            fail("load failure swallowed");
+        } catch (IOException expected) {
+            assertFalse(cache.contains("key"));
+        }
+
+        assertEquals("value", cache.acquire("key", () -> "value"));
+    }
+
+    @Test
+    public void releaseWhenLastTransformationCloses() throws Exception {
+        String schemaPath = "src/test/avro/flat_avro_transformed.avsc";
+        String stylesheetPath = "src/test/resources/io/confluent/nbchn/connect/xml/flat_avro_transformer.xsl";
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("schema.avro.path", schemaPath);
+        settings.put("xslt.transformer.path", "file:" + stylesheetPath);
+        String schemaKey = SharedCache.key(schemaPath, Files.readAllBytes(Paths.get(schemaPath)));
+        String templatesKey = SharedCache.key("file:" + stylesheetPath, Files.readAllBytes(Paths.get(stylesheetPath)));
+
+        FromXml<SourceRecord> first = new FromXml.Value<>();
+        FromXml<SourceRecord> second = new FromXml.Value<>();
+        first.configure(settings);
+        second.configure(settings);
+        first.close();
+        assertTrue(SharedCache.SCHEMAS.contains(schemaKey));
+        assertTrue(SharedCache.TEMPLATES.contains(templatesKey));
+        second.close();
+        second.close();
+
+        assertFalse(SharedCache.SCHEMAS.contains(schemaKey));
+        assertFalse(SharedCache.TEMPLATES.contains(templatesKey));
+    }
+}
@@ -0,0 +1,139 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ValueConvertersTest {
+
+    @Test
+    public void parseIntegers() throws Exception {
+        assertEquals(0, convert(ValueConverters.INT, "0"));
+        assertEquals(42, convert(ValueConverters.INT, " +42\n"));
+        assertEquals(Integer.MIN_VALUE, convert(ValueConverters.INT, "-2147483648"));
+        assertEquals(Integer.MAX_VALUE, convert(ValueConverters.INT, "2147483647"));
+        assertEquals(Long.MIN_VALUE, convert(ValueConverters.LONG, "-9223372036854775808"));
+        assertEquals(Long.MAX_VALUE, convert(ValueConverters.LONG, "9223372036854775807"));
+    }
+
+    @Test(expected = SAXException.class)
+    public void rejectIntOverflow() throws Exception {
+        convert(ValueConverters.INT, "2147483648");
+    }
+
+    @Test(expected = SAXException.class)
+    public void rejectEmptyInt() throws Exception {
+        convert(ValueConverters.INT, "  ");
+    }
+
+    @Test(expected = SAXException.class)
+    public void rejectInvalidLong() throws Exception {
+        convert(ValueConverters.LONG, "12a");
+    }
+
+    @Test
+    public void parseBooleans() throws Exception {
+        assertEquals(true, convert(ValueConverters.BOOLEAN, "true"));
+        assertEquals(true, convert(ValueConverters.BOOLEAN, " 1 "));
+        assertEquals(false, convert(ValueConverters.BOOLEAN, "false"));
+        assertEquals(false, convert(ValueConverters.BOOLEAN, "0\n"));
+    }
+
+    @Test(expected = SAXException.class)
+    public void rejectInvalidBoolean() throws Exception {
+        convert(ValueConverters.BOOLEAN, "yes");
+    }
+
+    @Test
+    public void resolveUnionBranchByValue() throws Exception {
+        Schema union = SchemaBuilder.unionOf().booleanType().and().stringType().endUnion();
+        SchemaNode node = SchemaNode.compile(SchemaBuilder.record("R").fields()
+                .name("flag").type(union).noDefault()
+                .endRecord()).child("flag");
+
+        assertEquals(true, convert(node.getBranches()[0].getConverter(), " true "));
+        try {
+            convert(node.getBranches()[0].getConverter(), "hello");
+            fail("text converted by the boolean branch");
+        } catch (SAXException expected) {
+            // the string branch gets the text
+        }
+        assertEquals("hello", convert(node.getBranches()[1].getConverter(), "hello"));
+    }
+
+    @Test
+    public void parseLogicalTypes() throws Exception {
+        Schema date = LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+        Schema time = LogicalTypes.timeMillis().addToSchema(Schema.create(Schema.Type.INT));
+        Schema timestamp = LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG));
+        Schema micros = LogicalTypes.timestampMicros().addToSchema(Schema.create(Schema.Type.LONG));
+        Schema decimal = LogicalTypes.decimal(6, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+
+        assertEquals(18292, convert(ValueConverters.of(date, OutputFormat.AVRO), " 2020-01-31 "));
+        assertEquals(48000500, convert(ValueConverters.of(time, OutputFormat.AVRO), "13:20:00.5"));
+        assertEquals(1580476800000L, convert(ValueConverters.of(timestamp, OutputFormat.AVRO), "2020-01-31T13:20:00Z"));
+        assertEquals(1580476800000L,
+                convert(ValueConverters.of(timestamp, OutputFormat.AVRO), "2020-01-31T14:20:00+01:00"));
+        assertEquals(1580476800000L, convert(ValueConverters.of(timestamp, OutputFormat.AVRO), "2020-01-31T13:20:00"));
+        assertEquals(1580476800000001L,
+                convert(ValueConverters.of(micros, OutputFormat.AVRO), "2020-01-31T13:20:00.000001Z"));
+        assertEquals(ByteBuffer.wrap(new byte[]{0x30, 0x39}),
+                convert(ValueConverters.of(decimal, OutputFormat.AVRO), "123.45"));
+
+        assertEquals(new Date(1580428800000L), convert(ValueConverters.of(date, OutputFormat.STRUCT), "2020-01-31"));
+        assertEquals(new Date(1580476800000L),
+                convert(ValueConverters.of(timestamp, OutputFormat.STRUCT), "2020-01-31T13:20:00Z"));
+        assertEquals(new BigDecimal("12.30"), convert(ValueConverters.of(decimal, OutputFormat.STRUCT), "12.3"));
+    }
+
+    @Test(expected = SAXException.class)
+    public void rejectDecimalBeyondScale() throws Exception {
+        Schema decimal = LogicalTypes.decimal(6, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+        convert(ValueConverters.of(decimal, OutputFormat.AVRO), "1.234");
+    }
+
+    @Test
+    public void lookUpEnumSymbols() throws Exception {
+        Schema suit = SchemaBuilder.enumeration("Suit").symbols("SPADES", "HEARTS");
+
+        assertEquals(new GenericData.EnumSymbol(suit, "HEARTS"),
+                convert(ValueConverters.of(suit, OutputFormat.AVRO), " HEARTS"));
+        assertEquals("HEARTS", convert(ValueConverters.of(suit, OutputFormat.STRUCT), "HEARTS"));
+        assertEquals(1, convert(ValueConverters.of(suit, OutputFormat.AVRO_BINARY), "HEARTS"));
+        try {
+            convert(ValueConverters.of(suit, OutputFormat.AVRO), "CLUBS");
+            fail("unknown symbol converted");
+        } catch (SAXException expected) {
+            // not a symbol of the enum
+        }
+    }
+
+    @Test
+    public void decodeBase64() throws Exception {
+        Schema fixed = SchemaBuilder.fixed("Hash").size(3);
+
+        assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}),
+                convert(ValueConverters.of(Schema.create(Schema.Type.BYTES), OutputFormat.AVRO), "AQID\n"));
+        assertArrayEquals(new byte[]{1, 2, 3},
+                (byte[]) convert(ValueConverters.of(Schema.create(Schema.Type.BYTES), OutputFormat.STRUCT), "AQID"));
+        assertEquals(new GenericData.Fixed(fixed, new byte[]{1, 2, 3}),
+                convert(ValueConverters.of(fixed, OutputFormat.AVRO), "AQID"));
+    }
+
+    private static Object convert(ValueConverter converter, String value) throws SAXException {
+        // pad the buffer to make sure the converters honour the range
+        char[] ch = ("##" + value + "##").toCharArray();
+        return converter.convert(ch, 2, value.length());
+    }
+}
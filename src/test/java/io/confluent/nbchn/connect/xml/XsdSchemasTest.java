@@ -0,0 +1,126 @@
+package io.confluent.nbchn.connect.xml;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class XsdSchemasTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void inferCatalog() throws Exception {
+        byte[] xsd = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_schema.xsd"));
+
+        Schema cd = SchemaBuilder.record("cd").namespace("com.example").fields()
+                .requiredString("title")
+                .requiredString("artist")
+                .requiredString("country")
+                .requiredString("company")
+                .requiredString("price")
+                .requiredString("year")
+                .endRecord();
+        Schema expected = SchemaBuilder.record("catalog").namespace("com.example").fields()
+                .name("cd").type().array().items(cd).arrayDefault(Collections.emptyList())
+                .endRecord();
+
+        assertEquals(expected, XsdSchemas.infer(xsd, "com.example"));
+    }
+
+    @Test
+    public void inferTypesOccurrencesAndAttributes() {
+        String xsd = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">" +
+                "<xs:element name=\"person\" type=\"Person\"/>" +
+                "<xs:complexType name=\"Person\"><xs:sequence>" +
+                "<xs:element name=\"name\" type=\"xs:string\"/>" +
+                "<xs:element name=\"age\" type=\"xs:int\" minOccurs=\"0\"/>" +
+                "<xs:element name=\"score\" type=\"Score\"/>" +
+                "<xs:element name=\"friend\" type=\"Person\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>" +
+                "</xs:sequence><xs:attribute name=\"id\" type=\"xs:long\" use=\"required\"/></xs:complexType>" +
+                "<xs:simpleType name=\"Score\"><xs:restriction base=\"xs:decimal\"/></xs:simpleType>" +
+                "</xs:schema>";
+
+        Schema person = XsdSchemas.infer(xsd.getBytes(StandardCharsets.UTF_8), "com.example");
+
+        assertEquals("com.example.Person", person.getFullName());
+        assertEquals(Schema.Type.STRING, person.getField("name").schema().getType());
+        assertEquals(Schema.Type.INT, person.getField("age").schema().getTypes().get(1).getType());
+        assertEquals(LogicalTypes.decimal(38, 10), person.getField("score").schema().getLogicalType());
+        assertSame(person, person.getField("friend").schema().getElementType());
+        assertEquals(Schema.Type.LONG, person.getField("id").schema().getTypes().get(1).getType());
+    }
+
+    @Test
+    public void inferLogicalTypesAndSanitizedNames() throws Exception {
+        String xsd = "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">" +
+                "<xs:element name=\"order\"><xs:complexType><xs:sequence>" +
+                "<xs:element name=\"order-id\" type=\"xs:string\"/>" +
+                "<xs:element name=\"amount\"><xs:simpleType><xs:restriction base=\"xs:decimal\">" +
+                "<xs:totalDigits value=\"8\"/><xs:fractionDigits value=\"2\"/></xs:restriction></xs:simpleType>" +
+                "</xs:element>" +
+                "<xs:element name=\"placed\" type=\"xs:date\"/>" +
+                "<xs:element name=\"shipped.at\" type=\"xs:dateTime\" minOccurs=\"0\"/>" +
+                "</xs:sequence></xs:complexType></xs:element>" +
+                "</xs:schema>";
+
+        Schema order = XsdSchemas.infer(xsd.getBytes(StandardCharsets.UTF_8), "com.example");
+
+        assertEquals(Collections.singleton("order-id"), order.getField("order_id").aliases());
+        assertEquals(LogicalTypes.decimal(10, 2), order.getField("amount").schema().getLogicalType());
+        assertEquals(LogicalTypes.date(), order.getField("placed").schema().getLogicalType());
+        assertEquals(LogicalTypes.timestampMillis(),
+                order.getField("shipped_at").schema().getTypes().get(1).getLogicalType());
+        // the inferred schema is valid and matches the elements by their XML names
+        assertEquals(order, new Schema.Parser().parse(order.toString()));
+        GenericRecordHandler handler = new GenericRecordHandler(order);
+        SAXParserFactory.newInstance().newSAXParser().parse(new InputSource(new StringReader(
+                "<order><order-id>o-1</order-id><amount>1234.5</amount><placed>2020-01-02</placed>" +
+                        "<shipped.at>2020-01-03T10:00:00Z</shipped.at></order>")), handler);
+        GenericRecord record = handler.getGenericRecord();
+        assertEquals("o-1", record.get("order_id"));
+        assertEquals(ByteBuffer.wrap(new BigDecimal("1234.50").unscaledValue().toByteArray()), record.get("amount"));
+        assertEquals((int) LocalDate.of(2020, 1, 2).toEpochDay(), record.get("placed"));
+        assertEquals(Instant.parse("2020-01-03T10:00:00Z").toEpochMilli(), record.get("shipped_at"));
+    }
+
+    @Test
+    public void cacheInferredSchema() throws Exception {
+        byte[] xsd = Files.readAllBytes(
+                Paths.get("src/test/resources/io/confluent/nbchn/connect/xml/cd_catalog_schema.xsd"));
+        Path cache = folder.newFolder("cache").toPath();
+
+        Schema inferred = XsdSchemas.load(xsd, "com.example", cache);
+        File[] cached = cache.toFile().listFiles();
+        assertEquals(1, cached.length);
+        assertTrue(cached[0].getName().endsWith(".avsc"));
+        // a cached schema is read back rather than inferred
+        Files.write(cached[0].toPath(), Schema.create(Schema.Type.STRING).toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(XsdSchemas.infer(xsd, "com.example"), inferred);
+        assertEquals(Schema.create(Schema.Type.STRING), XsdSchemas.load(xsd, "com.example", cache));
+    }
+}